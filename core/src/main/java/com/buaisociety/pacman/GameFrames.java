@@ -0,0 +1,126 @@
+package com.buaisociety.pacman;
+
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.buaisociety.pacman.maze.GameSnapshot;
+import com.buaisociety.pacman.maze.Maze;
+import com.buaisociety.pacman.sprite.Particle;
+import com.buaisociety.pacman.util.Disposable;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Hands the state of 1 game from the thread simulating it to the thread
+ * drawing it, so that neither thread ever waits for the other.
+ *
+ * <p>After ticking the game, the simulation {@link #publish(GameManager)
+ * publishes} a {@link GameSnapshot} of it. The renderer restores the latest
+ * snapshot into its own {@link GameManager#createMazeReplica() replica} of the
+ * game, and draws the replica instead of the game. Snapshots are triple
+ * buffered (1 being saved, 1 ready and 1 being drawn), and are only restored
+ * when a newer one was published. Everything that reads the game's entities,
+ * like creating the replica's copy of a new entity, happens while publishing.
+ *
+ * <p>Particles are not part of the game's state, they only move while drawn.
+ * So instead of being copied, they are moved from the game to the replica
+ * with the next frame, and the replica draws them from then on.
+ */
+public final class GameFrames implements Disposable {
+
+    private final @NotNull AtomicReference<Frame> ready = new AtomicReference<>();
+    private final @NotNull ConcurrentLinkedQueue<Frame> free = new ConcurrentLinkedQueue<>();
+
+    // simulation thread
+    private @Nullable Maze source;
+    private @Nullable GameManager replica;
+
+    // rendering thread
+    private @Nullable Frame front;
+    private @Nullable GameManager rendered;
+
+    /**
+     * Saves the current state of the given game as the next frame to draw.
+     * Must be called from the thread that updates the game.
+     *
+     * @param game the game to publish, always the same game
+     */
+    public void publish(@NotNull GameManager game) {
+        Maze maze = game.getCurrentMaze();
+        if (maze == null)
+            return;
+
+        // A new level is a new maze, which needs a new replica
+        if (maze != source) {
+            source = maze;
+            replica = game.createMazeReplica();
+        }
+
+        Frame frame = free.poll();
+        if (frame == null)
+            frame = new Frame();
+        frame.replica = replica;
+        maze.saveSnapshot(frame.snapshot);
+        Objects.requireNonNull(replica.getCurrentMaze()).createReplicaEntities(frame.snapshot);
+        maze.takeParticles(frame.particles);
+
+        Frame skipped = ready.getAndSet(frame);
+        if (skipped != null) {
+            // Its particles were never drawn
+            frame.particles.addAll(skipped.particles);
+            skipped.particles.clear();
+            free.offer(skipped);
+        }
+    }
+
+    /**
+     * Draws the latest published frame, or nothing if no frame was published
+     * yet. Must be called from the rendering thread.
+     *
+     * @param batch the sprite batch to render to
+     */
+    public void render(@NotNull SpriteBatch batch) {
+        Frame frame = ready.getAndSet(null);
+        if (frame != null) {
+            if (front != null)
+                free.offer(front);
+            front = frame;
+            Maze maze = Objects.requireNonNull(frame.replica.getCurrentMaze());
+            maze.restoreSnapshot(frame.snapshot);
+            maze.addParticles(frame.particles);
+            frame.particles.clear();
+        }
+        if (front == null)
+            return;
+
+        // Textures of the last level's replica may only be disposed of here
+        if (rendered != front.replica) {
+            if (rendered != null)
+                rendered.dispose();
+            rendered = front.replica;
+        }
+        rendered.render(batch);
+    }
+
+    /**
+     * Disposes of the replica's textures. Must be called from the rendering
+     * thread, once the game is no longer published.
+     */
+    @Override
+    public void dispose() {
+        if (rendered != null)
+            rendered.dispose();
+        rendered = null;
+        front = null;
+    }
+
+    private static final class Frame {
+        private final @NotNull GameSnapshot snapshot = new GameSnapshot();
+        private final @NotNull List<Particle> particles = new ArrayList<>();  // taken from the game since the last frame
+        private GameManager replica;
+    }
+}
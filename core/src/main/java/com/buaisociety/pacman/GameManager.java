@@ -3,15 +3,11 @@ package com.buaisociety.pacman;
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.Input;
 import com.badlogic.gdx.graphics.Color;
-import com.badlogic.gdx.graphics.Pixmap;
-import com.badlogic.gdx.graphics.Texture;
-import com.badlogic.gdx.graphics.g2d.Sprite;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
-import com.buaisociety.pacman.entity.Direction;
+import com.buaisociety.pacman.entity.Entity;
 import com.buaisociety.pacman.entity.EntityType;
 import com.buaisociety.pacman.entity.GhostEntity;
 import com.buaisociety.pacman.entity.PacmanEntity;
-import com.buaisociety.pacman.entity.behavior.Behavior;
 import com.buaisociety.pacman.entity.behavior.JoystickInputBehavior;
 import com.buaisociety.pacman.event.CreateMazeEvent;
 import com.buaisociety.pacman.event.EntityPreSpawnEvent;
@@ -20,22 +16,23 @@ import com.buaisociety.pacman.event.GameEndEvent;
 import com.buaisociety.pacman.event.LoseLifeEvent;
 import com.buaisociety.pacman.event.NextLevelEvent;
 import com.buaisociety.pacman.maze.Maze;
+import com.buaisociety.pacman.maze.MazeTemplate;
 import com.buaisociety.pacman.maze.TerminalReason;
-import com.buaisociety.pacman.maze.TileState;
 import com.buaisociety.pacman.sprite.GrayscaleSpriteSheet;
 import com.buaisociety.pacman.sprite.TextSpriteSheet;
 import com.buaisociety.pacman.util.Disposable;
 import com.buaisociety.pacman.util.EventSystem;
+import com.buaisociety.pacman.util.GameRandom;
 import com.buaisociety.pacman.util.Joystick;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ArrayNode;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.joml.Vector2i;
 
 import java.util.List;
-import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.StreamSupport;
 
 /**
@@ -43,29 +40,82 @@ import java.util.stream.StreamSupport;
  */
 public class GameManager implements Disposable {
 
+    private static final @NotNull Map<String, List<String>> LEVEL_PRESETS = new ConcurrentHashMap<>();
+
     private final @NotNull EventSystem events;
     private final @NotNull Config config;
+    private final @NotNull GameRandom random;
 
     private int level;
     private int extraLives;
     private int score;
     private @Nullable Maze currentMaze;
-    private @NotNull TextSpriteSheet textSprite;
-    private @NotNull GrayscaleSpriteSheet pacmanSprite;
+    private @Nullable TextSpriteSheet textSprite;
+    private @Nullable GrayscaleSpriteSheet pacmanSprite;
 
     public GameManager(@NotNull EventSystem events, @NotNull Config config) {
         this.events = events;
         this.config = config;
+        this.random = new GameRandom(config.seed);
 
         this.level = config.startLevel;
         this.extraLives = config.startLives;
         this.score = config.startScore;
         this.currentMaze = null;
 
+        // Sprites may be left null, in which case they are created on the first render
         this.textSprite = config.textSprite;
-        textSprite.getSpriteSheet().setColors(Color.CLEAR, Color.WHITE);
+        if (textSprite != null)
+            textSprite.getSpriteSheet().setColors(Color.CLEAR, Color.WHITE);
         this.pacmanSprite = config.pacmanSprite;
-        pacmanSprite.setColors(Color.CLEAR, Color.YELLOW);
+        if (pacmanSprite != null)
+            pacmanSprite.setColors(Color.CLEAR, Color.YELLOW);
+    }
+
+    /**
+     * Creates a headless copy of this game manager, for simulating games on
+     * another thread: it has the same level, score and lives, but its own
+     * event system (so simulated games never reach any listeners) and no
+     * maze. See {@link Maze#createReplica(com.buaisociety.pacman.entity.behavior.Behavior)}.
+     *
+     * @return the new game manager
+     */
+    public @NotNull GameManager createReplica() {
+        Config replicaConfig = new Config();
+        replicaConfig.id = config.id;
+        replicaConfig.headless = true;
+        replicaConfig.levelsPreset = config.levelsPreset;
+        replicaConfig.startLevel = config.startLevel;
+        replicaConfig.startLives = config.startLives;
+        replicaConfig.startScore = config.startScore;
+        replicaConfig.handicap = config.handicap;
+        replicaConfig.seed = config.seed;
+
+        GameManager replica = new GameManager(new EventSystem(), replicaConfig);
+        replica.level = level;
+        replica.extraLives = extraLives;
+        replica.score = score;
+        return replica;
+    }
+
+    /**
+     * Creates a {@link #createReplica() replica} of this game playing a
+     * {@link Maze#createReplica replica} of the current maze, so that the
+     * copy can be rendered (or updated) like this game, on any thread.
+     *
+     * <p>Must be called from the thread that updates this game.
+     *
+     * @return the new game manager, with its own maze
+     * @throws IllegalStateException if no game has been started yet
+     */
+    public @NotNull GameManager createMazeReplica() {
+        if (currentMaze == null)
+            throw new IllegalStateException("No game has been started yet");
+
+        Maze maze = currentMaze.createReplica(Entity::getDirection);
+        GameManager replica = maze.getLevelManager();
+        replica.currentMaze = maze;
+        return replica;
     }
 
     /**
@@ -87,6 +137,17 @@ public class GameManager implements Disposable {
         return config;
     }
 
+    /**
+     * Returns the random number generator of this game, seeded with
+     * {@link Config#seed}. All randomness in the simulation should come from
+     * here, so that a game can be replayed from its seed.
+     *
+     * @return the random number generator of this game
+     */
+    public @NotNull GameRandom getRandom() {
+        return random;
+    }
+
     /**
      * Returns the current level. 1 is the first level. 0 implies that no game
      * has been started yet.
@@ -106,10 +167,27 @@ public class GameManager implements Disposable {
         return score;
     }
 
+    /**
+     * Returns the sprite sheet used to render text, creating it on first use.
+     *
+     * @return the text sprite sheet
+     */
     public @NotNull TextSpriteSheet getTextSprite() {
+        if (textSprite == null) {
+            textSprite = new TextSpriteSheet(new GrayscaleSpriteSheet("sprites/text-sprite.png", 8));
+            textSprite.getSpriteSheet().setColors(Color.CLEAR, Color.WHITE);
+        }
         return textSprite;
     }
 
+    private @NotNull GrayscaleSpriteSheet getPacmanSprite() {
+        if (pacmanSprite == null) {
+            pacmanSprite = new GrayscaleSpriteSheet("sprites/pacman-sprite.png", 20);
+            pacmanSprite.setColors(Color.CLEAR, Color.YELLOW);
+        }
+        return pacmanSprite;
+    }
+
     /**
      * Increments the score by the given amount.
      *
@@ -137,6 +215,16 @@ public class GameManager implements Disposable {
         return extraLives;
     }
 
+    /**
+     * Sets the current score. Unlike {@link #incrementScore(int)}, this never
+     * awards an extra life; it is used to restore a saved score.
+     *
+     * @param score the new score
+     */
+    public void setScore(int score) {
+        this.score = score;
+    }
+
     /**
      * Sets the number of extra lives remaining.
      *
@@ -163,7 +251,7 @@ public class GameManager implements Disposable {
             return;
         if (extraLives < 0) {
             // Let people press any button to restart the game
-            if (Gdx.input.isKeyJustPressed(Input.Keys.ANY_KEY)) {
+            if (!config.headless && Gdx.input.isKeyJustPressed(Input.Keys.ANY_KEY)) {
                 level = 0;
                 extraLives = config.startLives;
                 score = config.startScore;
@@ -176,6 +264,18 @@ public class GameManager implements Disposable {
         currentMaze.update();
     }
 
+    /**
+     * Skips the frozen ticks of the current maze, see {@link Maze#skipFrozenTicks()}.
+     *
+     * @return the number of ticks skipped
+     */
+    public int skipFrozenTicks() {
+        if (currentMaze == null || extraLives < 0)
+            return 0;
+
+        return currentMaze.skipFrozenTicks();
+    }
+
     public void postUpdate() {
         TerminalReason complete = currentMaze.getTerminalReason();
 
@@ -208,6 +308,9 @@ public class GameManager implements Disposable {
         if (currentMaze == null)
             return;
 
+        TextSpriteSheet textSprite = getTextSprite();
+        GrayscaleSpriteSheet pacmanSprite = getPacmanSprite();
+
         currentMaze.render(batch);
         textSprite.render(batch, Maze.TILE_SIZE * 9, Maze.TILE_SIZE * 35, "HIGH SCORE");
 
@@ -236,17 +339,9 @@ public class GameManager implements Disposable {
     public void nextLevel() {
         level++;
 
-        // Parse levels.json, and determine the name of the next level
-        ObjectMapper mapper = new ObjectMapper();
-        JsonNode levelsJson;
-        try {
-            levelsJson = mapper.readTree(Gdx.files.internal(config.levelsPreset).readString());
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to load " + config.levelsPreset, e);
-        }
-
-        ArrayNode allLevels = (ArrayNode) levelsJson.get("levels");
-        String nextLevelName = allLevels.get(Math.min(level, allLevels.size()) - 1).asText();
+        // Determine the name of the next level
+        List<String> allLevels = getLevelNames(config.levelsPreset);
+        String nextLevelName = allLevels.get(Math.min(level, allLevels.size()) - 1);
 
         // Fire an event to allow modification of the next level name
         NextLevelEvent event = new NextLevelEvent(nextLevelName);
@@ -254,92 +349,11 @@ public class GameManager implements Disposable {
         nextLevelName = event.getNextLevel();
 
         // Now that we have the next level name, we should get the maze for it
-        JsonNode mazeConfigJson;
-        try {
-            mazeConfigJson = mapper.readTree(Gdx.files.internal("mazes/" + nextLevelName + "/config.json").readString());
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to load maze config for " + nextLevelName, e);
-        }
-
-        Pixmap pixmap = new Pixmap(Gdx.files.internal("mazes/" + nextLevelName + "/maze.png"));
-        TileState[][] tiles = new TileState[pixmap.getHeight()][pixmap.getWidth()];
-        for (int y = 0; y < pixmap.getHeight(); y++) {
-            for (int x = 0; x < pixmap.getWidth(); x++) {
-                int pixel = pixmap.getPixel(x, y);
-                Color color = new Color(pixel);
-                int red = (int) (color.r * 255);  // grayscale, so r=g=b
-
-                // This is a 4-bit grayscale image, so we can only have 16 colors
-                int normalized = red / (256 / (TileState.values().length - 1));
-                tiles[pixmap.getHeight() - 1 - y][x] = switch (normalized) {
-                    case 0 -> TileState.SPACE;
-                    case 1 -> TileState.TUNNEL;
-                    case 2 -> TileState.PELLET;
-                    case 3 -> TileState.POWER_PELLET;
-                    case 4 -> TileState.GHOST_PEN;
-                    case 5 -> TileState.WALL;
-                    default -> throw new IllegalStateException("Unexpected value: " + normalized);
-                };
-            }
-        }
-
-        Sprite levelSprite = new Sprite(new Texture("mazes/" + nextLevelName + "/render.png"));
-
-        Vector2i fruitSpawnPixel = parseVector(mazeConfigJson.get("fruit_spawn_position"));
-        Maze maze = new Maze(this, levelSprite, tiles, fruitSpawnPixel);
-        Vector2i pacmanSpawnPixel = parseVector(mazeConfigJson.get("pacman_spawn_position"));
-        Vector2i ghostRevivePixel = parseVector(mazeConfigJson.get("ghost_revive_position"));
-
-        for (JsonNode ghostNode : mazeConfigJson.get("ghosts")) {
-            String ghostName = ghostNode.get("name").asText();  // expect a value like 'ghosts/inky.json'
-            Vector2i ghostSpawnPixel = parseVector(ghostNode.get("spawn_position"));
-            Direction ghostSpawnDirection = Direction.valueOf(ghostNode.get("spawn_direction").asText().toUpperCase(Locale.ROOT));
-            boolean isReleased = ghostNode.get("is_released").asBoolean();
-            Vector2i ghostScatterTile = parseVector(ghostNode.get("scatter_tile"));
-
-            JsonNode ghostJson;
-            try {
-                ghostJson = mapper.readTree(Gdx.files.internal(ghostName).readString());
-            } catch (Exception e) {
-                throw new RuntimeException("Failed to load ghost config for " + ghostName, e);
-            }
-
-            String behaviorClassPath = ghostJson.get("chase_behavior").asText();
-            boolean isElroy = ghostJson.get("is_elroy").asBoolean();
-            Behavior behavior;
-            try {
-                behavior = (Behavior) Class.forName(behaviorClassPath).getConstructor().newInstance();
-            } catch (Exception e) {
-                throw new RuntimeException("Failed to load behavior for " + ghostName, e);
-            }
+        MazeTemplate template = MazeTemplate.get(nextLevelName);
+        Maze maze = new Maze(this, template);
 
-            JsonNode colorJson = ghostJson.get("colors");
-            List<Color> aliveColors = StreamSupport.stream(colorJson.get("alive").spliterator(), false)
-                .map(GameManager::parseColor)
-                .toList();
-            List<Color> frightenedColors = StreamSupport.stream(colorJson.get("frightened").spliterator(), false)
-                .map(GameManager::parseColor)
-                .toList();
-            List<Color> flashColors = StreamSupport.stream(colorJson.get("flash").spliterator(), false)
-                .map(GameManager::parseColor)
-                .toList();
-            List<Color> eatenColors = StreamSupport.stream(colorJson.get("eaten").spliterator(), false)
-                .map(GameManager::parseColor)
-                .toList();
-
-            GhostEntity.Config ghostConfig = new GhostEntity.Config();
-            ghostConfig.isElroy = isElroy;
-            ghostConfig.spriteSheet = new GrayscaleSpriteSheet(new Texture("sprites/ghost-sprite.png"), 20);
-            ghostConfig.chase = behavior;
-            ghostConfig.scatterTile = ghostScatterTile;
-            ghostConfig.spawnPixel = ghostSpawnPixel;
-            ghostConfig.spawnDirection = ghostSpawnDirection;
-            ghostConfig.spawnReleased = isReleased;
-            ghostConfig.reviveTile = ghostRevivePixel;
-            ghostConfig.colorsAlive = aliveColors.toArray(new Color[0]);
-            ghostConfig.colorsFrightened = frightenedColors.toArray(new Color[0]);
-            ghostConfig.colorsFlash = flashColors.toArray(new Color[0]);
-            ghostConfig.colorsEaten = eatenColors.toArray(new Color[0]);
+        for (MazeTemplate.GhostTemplate ghostTemplate : template.getGhosts()) {
+            GhostEntity.Config ghostConfig = ghostTemplate.createConfig(template.getGhostRevivePixel());
 
             // Fire an event to allow modification of the ghost config
             EntityPreSpawnEvent preSpawnEvent = new EntityPreSpawnEvent(maze, EntityType.GHOST, ghostConfig);
@@ -356,15 +370,14 @@ public class GameManager implements Disposable {
             if (spawnEvent.isCancelled())
                 continue;
 
-            maze.getEntities().add(spawnEvent.getEntity());
+            maze.addEntity(spawnEvent.getEntity());
         }
 
         Joystick joystick = new Joystick();
-        Gdx.input.setInputProcessor(joystick);
+        JoystickInputBehavior joystickBehavior = new JoystickInputBehavior(joystick);
         PacmanEntity.Config pacmanConfig = new PacmanEntity.Config();
-        pacmanConfig.behavior = new JoystickInputBehavior(joystick);
-        pacmanConfig.spawnPixel = pacmanSpawnPixel;
-        pacmanConfig.spriteSheet = new GrayscaleSpriteSheet(new Texture("sprites/pacman-sprite.png"), 20);
+        pacmanConfig.behavior = joystickBehavior;
+        pacmanConfig.spawnPixel = new Vector2i(template.getPacmanSpawnPixel());
 
         // Fire an event to allow modification of the pacman config
         EntityPreSpawnEvent preSpawnEvent = new EntityPreSpawnEvent(maze, EntityType.PACMAN, pacmanConfig);
@@ -373,6 +386,11 @@ public class GameManager implements Disposable {
         if (preSpawnEvent.isCancelled())
             return;
 
+        // Only listen to the keyboard when a player controls pacman. Levels may
+        // be created on simulation threads, so input is set on the rendering thread.
+        if (!config.headless && pacmanConfig.behavior == joystickBehavior)
+            Gdx.app.postRunnable(() -> Gdx.input.setInputProcessor(joystick));
+
         PacmanEntity pacman = new PacmanEntity(maze, pacmanConfig);
 
         // Fire an event to alert that the pacman has been spawned
@@ -381,7 +399,7 @@ public class GameManager implements Disposable {
         if (spawnEvent.isCancelled())
             return;
 
-        maze.getEntities().add(spawnEvent.getEntity());
+        maze.addEntity(spawnEvent.getEntity());
 
         CreateMazeEvent createMazeEvent = new CreateMazeEvent(maze);
         events.fireEvent(createMazeEvent);
@@ -395,32 +413,44 @@ public class GameManager implements Disposable {
     public void dispose() {
         if (currentMaze != null)
             currentMaze.dispose();
-        textSprite.dispose();
-        pacmanSprite.dispose();
+        if (textSprite != null)
+            textSprite.dispose();
+        if (pacmanSprite != null)
+            pacmanSprite.dispose();
     }
 
-    private static @NotNull Color parseColor(@NotNull JsonNode node) {
-        return new Color(
-            (float) node.get("r").asDouble(),
-            (float) node.get("g").asDouble(),
-            (float) node.get("b").asDouble(),
-            (float) node.get("a").asDouble()
-        );
-    }
+    /**
+     * Returns the level names of the given levels preset (like
+     * <code>levels.json</code>). Presets are only parsed once.
+     *
+     * @param levelsPreset the path to the levels preset
+     * @return the level names, in order
+     */
+    private static @NotNull List<String> getLevelNames(@NotNull String levelsPreset) {
+        return LEVEL_PRESETS.computeIfAbsent(levelsPreset, preset -> {
+            JsonNode levelsJson;
+            try {
+                levelsJson = new ObjectMapper().readTree(Gdx.files.internal(preset).readString());
+            } catch (Exception e) {
+                throw new RuntimeException("Failed to load " + preset, e);
+            }
 
-    private static @NotNull Vector2i parseVector(@NotNull JsonNode node) {
-        return new Vector2i(node.get("x").asInt(), node.get("y").asInt());
+            return StreamSupport.stream(levelsJson.get("levels").spliterator(), false)
+                .map(JsonNode::asText)
+                .toList();
+        });
     }
 
-
     public static class Config {
         public int id = 0;
-        public @NotNull TextSpriteSheet textSprite = new TextSpriteSheet(new GrayscaleSpriteSheet(new Texture("sprites/text-sprite.png"), 8));
-        public @NotNull GrayscaleSpriteSheet pacmanSprite = new GrayscaleSpriteSheet(new Texture("sprites/pacman-sprite.png"), 20);
+        public @Nullable TextSpriteSheet textSprite = null;  // null means it is created on the first render
+        public @Nullable GrayscaleSpriteSheet pacmanSprite = null;  // null means it is created on the first render
+        public boolean headless = false;  // simulation only, no input handling or particles
         public String levelsPreset = "levels.json";
         public int startLevel = 0;  // when nextLevel() is called for the first time, this gets incremented to 1
         public int startLives = 2;
         public int startScore = 0;
         public int handicap = 0;  // Delays the level speed changes by this many levels
+        public long seed = System.nanoTime();  // games with the same seed (and the same inputs) play out the same
     }
 }
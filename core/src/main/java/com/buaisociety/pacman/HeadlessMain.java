@@ -0,0 +1,51 @@
+package com.buaisociety.pacman;
+
+import com.badlogic.gdx.ApplicationAdapter;
+
+/**
+ * Trains pacman without a window or graphics context. This is the same
+ * training loop as {@link Main}, except that nothing is ever rendered, so it
+ * can be run on render-less servers (see the <code>headless</code> launcher).
+ *
+ * <p>Since there is no display to keep up with, the games are run on
+ * {@link TrainingSession.ExecutionMode#SHARDED sharded} workers, and each call
+ * to {@link #render()} advances every game by many ticks at once.
+ */
+public class HeadlessMain extends ApplicationAdapter {
+
+    private final int totalGames = 250;
+    private TrainingSession session;
+    private GameLoop secondLoop;  // 1 update per second
+    private long lastTicks;
+    private long lastGameTicks;
+
+    @Override
+    public void create() {
+        secondLoop = new GameLoop(1);
+
+        session = new TrainingSession(totalGames, true);
+        session.setExecutionMode(TrainingSession.ExecutionMode.SHARDED);
+        session.setTicksPerDispatch(60);
+        session.setTimeWarp(true);  // skip the level start and ghost-eaten freezes
+        session.setAsyncEvolution(false);  // set to true to keep every thread busy until the generation ends
+        session.create();
+    }
+
+    @Override
+    public void render() {
+        session.update();
+
+        if (secondLoop.update()) {
+            long ticks = session.getTicks();
+            long gameTicks = session.getGameTicks();
+            System.out.println("TPS: " + (ticks - lastTicks) + ", Ticks: " + ticks + ", Game ticks/s: " + (gameTicks - lastGameTicks));
+            lastTicks = ticks;
+            lastGameTicks = gameTicks;
+        }
+    }
+
+    @Override
+    public void dispose() {
+        session.dispose();
+    }
+}
@@ -19,14 +19,17 @@ import java.util.concurrent.CompletableFuture;
 
 public class PacmanNeatClient implements Disposable {
 
-    private static final @NotNull Texture NODE_TEXTURE = createNodeTexture();
-    private static final @NotNull TextureRegion CONNECTION_TEXTURE = createConnectionTexture();
+    // Created on the first network render, so headless training never needs a graphics context
+    private static @Nullable Texture nodeTexture;
+    private static @Nullable TextureRegion connectionTexture;
 
     private final @NotNull Neat neat;
     private final @NotNull Client client;
+    private final @NotNull GameFrames frames = new GameFrames();
     private @Nullable GameManager gameManager;
     private @Nullable CompletableFuture<Void> gameCompleteFuture;
     private boolean renderNetwork;
+    private volatile boolean rendered;
 
     public PacmanNeatClient(@NotNull Neat neat, @NotNull Client client) {
         this.neat = neat;
@@ -66,11 +69,40 @@ public class PacmanNeatClient implements Disposable {
         this.renderNetwork = renderNetwork;
     }
 
+    public boolean isRendered() {
+        return rendered;
+    }
+
+    /**
+     * Sets whether this game is drawn. Only drawn games publish their state
+     * after each tick, see {@link #publishFrame()}.
+     *
+     * @param rendered true if the game is drawn
+     */
+    public void setRendered(boolean rendered) {
+        this.rendered = rendered;
+    }
+
+    /**
+     * Publishes the current state of the game for {@link #render(SpriteBatch)}.
+     * Called by the thread that updates the game, after each update.
+     */
+    public void publishFrame() {
+        if (gameManager != null)
+            frames.publish(gameManager);
+    }
+
+    /**
+     * Draws the game as of its last {@link #publishFrame() published} frame,
+     * so drawing never waits for the simulation (or blocks it).
+     *
+     * @param batch the sprite batch to render to
+     */
     public void render(@NotNull SpriteBatch batch) {
         if (renderNetwork)
             renderNeuralNetwork(batch);
-        else if (gameManager != null)
-            gameManager.render(batch);
+        else
+            frames.render(batch);
     }
 
     /**
@@ -79,6 +111,11 @@ public class PacmanNeatClient implements Disposable {
      * @param batch the sprite batch to render to
      */
     private void renderNeuralNetwork(@NotNull SpriteBatch batch) {
+        if (nodeTexture == null)
+            nodeTexture = createNodeTexture();
+        if (connectionTexture == null)
+            connectionTexture = createConnectionTexture();
+
         Map<Integer, NodeGene> cache = new HashMap<>();
         for (NodeGene node : client.getGenome().getNodes()) {
             cache.put(node.getId(), node);
@@ -102,7 +139,7 @@ public class PacmanNeatClient implements Disposable {
 
         float activation = getClient().getCalculator().getActivation(node.getId());
         batch.setColor(activation, activation, activation, 1f);
-        batch.draw(NODE_TEXTURE, x, y, nodeSize, nodeSize);
+        batch.draw(nodeTexture, x, y, nodeSize, nodeSize);
         batch.setColor(Color.WHITE);  // reset tint
     }
 
@@ -122,7 +159,7 @@ public class PacmanNeatClient implements Disposable {
 
         float scale = Math.min(Math.abs(connection.getWeight()), 1f);
         batch.setColor(tint);
-        batch.draw(CONNECTION_TEXTURE, x1, y1, 0, 0.5f, distance, 1f, 1f, scale, angle);
+        batch.draw(connectionTexture, x1, y1, 0, 0.5f, distance, 1f, 1f, scale, angle);
         batch.setColor(Color.WHITE);  // reset tint
     }
 
@@ -152,5 +189,6 @@ public class PacmanNeatClient implements Disposable {
     public void dispose() {
         if (gameManager != null)
             gameManager.dispose();
+        frames.dispose();
     }
 }
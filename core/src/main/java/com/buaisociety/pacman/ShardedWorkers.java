@@ -0,0 +1,142 @@
+package com.buaisociety.pacman;
+
+import com.buaisociety.pacman.util.Disposable;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * A fixed set of persistent worker threads, where each worker owns a stable
+ * shard of the items. Item <code>i</code> always belongs to worker
+ * <code>i % threads</code>, so the same thread keeps touching the same games
+ * (and their memory) every dispatch.
+ *
+ * <p>Each call to {@link #run(List, Consumer)} is 1 dispatch: every worker
+ * works through its own shard from the front, and once its shard is empty,
+ * steals items from the back of the other shards. The calling thread waits
+ * for every item to be processed, so there is exactly 1 barrier per dispatch
+ * (instead of 1 task submission per item).
+ *
+ * @param <T> the type of the items
+ */
+public class ShardedWorkers<T> implements Disposable {
+
+    private final @NotNull Thread[] workers;
+    private final @NotNull ConcurrentLinkedDeque<T>[] shards;
+    private final @NotNull Phaser phaser;
+    private volatile @Nullable Consumer<T> task;
+    private final @NotNull AtomicReference<Throwable> failure = new AtomicReference<>();  // the first error of a dispatch
+
+    /**
+     * Creates and starts the worker threads.
+     *
+     * @param threads the number of worker threads (and shards)
+     */
+    @SuppressWarnings("unchecked")
+    public ShardedWorkers(int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("Need at least 1 thread, got " + threads);
+
+        this.workers = new Thread[threads];
+        this.shards = new ConcurrentLinkedDeque[threads];
+        this.phaser = new Phaser(threads + 1);  // +1 for the dispatching thread
+
+        for (int i = 0; i < threads; i++) {
+            shards[i] = new ConcurrentLinkedDeque<>();
+
+            int shard = i;
+            workers[i] = new Thread(() -> work(shard), "Pacman Worker " + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+    }
+
+    public int getThreads() {
+        return workers.length;
+    }
+
+    /**
+     * Runs the task once for each item, and waits for all of them to finish.
+     * Exceptions thrown by the task are printed, and the other items are
+     * still processed.
+     *
+     * @param items the items to process, in a stable order
+     * @param task  the task to run for each item
+     * @throws Error the first error thrown by the task, once every item was
+     *               processed (the workers keep running)
+     */
+    public void run(@NotNull List<T> items, @NotNull Consumer<T> task) {
+        for (int i = 0; i < items.size(); i++) {
+            shards[i % shards.length].addLast(items.get(i));
+        }
+        this.task = task;
+
+        phaser.arriveAndAwaitAdvance();  // start
+        phaser.arriveAndAwaitAdvance();  // finish
+        this.task = null;
+
+        Throwable error = failure.getAndSet(null);
+        if (error instanceof Error e)
+            throw e;
+        if (error != null)
+            throw new IllegalStateException("Task failed", error);
+    }
+
+    private void work(int shard) {
+        while (true) {
+            // Wait for the next dispatch. A negative phase means we were disposed
+            if (phaser.arriveAndAwaitAdvance() < 0)
+                return;
+
+            Consumer<T> task = this.task;
+            T item;
+            while ((item = next(shard)) != null) {
+                try {
+                    task.accept(item);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                } catch (Throwable e) {
+                    // A dead worker would never arrive at the barrier, so the
+                    // error is handed to the dispatching thread instead
+                    failure.compareAndSet(null, e);
+                }
+            }
+
+            if (phaser.arriveAndAwaitAdvance() < 0)
+                return;
+        }
+    }
+
+    /**
+     * Returns the next item from the worker's own shard, or steals one from
+     * another shard once the worker's shard is empty.
+     *
+     * @param shard the worker's shard
+     * @return the next item, or null if every shard is empty
+     */
+    private @Nullable T next(int shard) {
+        T item = shards[shard].pollFirst();
+        if (item != null)
+            return item;
+
+        for (int i = 1; i < shards.length; i++) {
+            item = shards[(shard + i) % shards.length].pollLast();
+            if (item != null)
+                return item;
+        }
+        return null;
+    }
+
+    /**
+     * Stops the worker threads.
+     */
+    @Override
+    public void dispose() {
+        phaser.forceTermination();
+    }
+}
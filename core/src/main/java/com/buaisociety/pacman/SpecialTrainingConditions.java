@@ -4,12 +4,9 @@ import com.buaisociety.pacman.entity.EntityType;
 import com.buaisociety.pacman.event.CreateMazeEvent;
 import com.buaisociety.pacman.event.EntityPreSpawnEvent;
 import com.buaisociety.pacman.maze.Maze;
-import com.buaisociety.pacman.maze.TileState;
 import com.buaisociety.pacman.util.EventListener;
+import com.buaisociety.pacman.util.GameRandom;
 import org.jetbrains.annotations.NotNull;
-import org.joml.Vector2ic;
-
-import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Just a quick utility class to help with your special training conditions.
@@ -38,29 +35,23 @@ public final class SpecialTrainingConditions {
     public static @NotNull EventListener<CreateMazeEvent> onCreateMaze() {
         return event -> {
             Maze maze = event.getMaze();
-
-            // Go through each cell in the maze and try to remove pellets
-            // During training, this is useful since the randomness will help
-            // prevent overfitting
-            double pelletDensity = ThreadLocalRandom.current().nextDouble();
-            Vector2ic dimensions = maze.getDimensions();
-            for (int x = 0; x < dimensions.x(); x++) {
-                for (int y = 0; y < dimensions.y(); y++) {
-                    TileState tileState = maze.getTile(x, y).getState();
-                    if (tileState != TileState.PELLET && tileState != TileState.POWER_PELLET)
-                        continue;
-
-                    if (ThreadLocalRandom.current().nextDouble() < pelletDensity) {
-                        maze.getTile(x, y).setState(TileState.SPACE);
-                    }
+            GameRandom random = maze.getLevelManager().getRandom();
+
+            // Randomly remove pellets from the maze. During training, this is
+            // useful since the randomness will help prevent overfitting.
+            // Removing them with 1 mask recalculates the pellet counts and
+            // distances once, instead of once per pellet.
+            double pelletDensity = random.nextDouble();
+            long[] keep = new long[maze.getPelletWordCount()];
+            for (int i = 0; i < keep.length * Long.SIZE; i++) {
+                if (random.nextDouble() >= pelletDensity) {
+                    keep[i >>> 6] |= 1L << i;
                 }
             }
-
-            // Recalculate maze pellets after removing some
-            maze.initTiles();
+            maze.retainPellets(keep);
 
             // spawn in a fruit by default to help Pacman learn to eat them
-            if (ThreadLocalRandom.current().nextDouble() < 0.75) {
+            if (random.nextDouble() < 0.75) {
                 maze.spawnFruit();
             }
         };
@@ -0,0 +1,691 @@
+package com.buaisociety.pacman;
+
+import com.badlogic.gdx.Gdx;
+import com.buaisociety.pacman.entity.EntityType;
+import com.buaisociety.pacman.entity.PacmanEntity;
+import com.buaisociety.pacman.entity.behavior.NeatPacmanBehavior;
+import com.buaisociety.pacman.event.CreateMazeEvent;
+import com.buaisociety.pacman.event.EntityPreSpawnEvent;
+import com.buaisociety.pacman.event.GameEndEvent;
+import com.buaisociety.pacman.util.Disposable;
+import com.buaisociety.pacman.util.EventSystem;
+import com.buaisociety.pacman.util.GameRandom;
+import com.cjcrafter.neat.Neat;
+import com.cjcrafter.neat.NeatImpl;
+import com.cjcrafter.neat.NeatPrinter;
+import com.cjcrafter.neat.NeatSaver;
+import com.cjcrafter.neat.Parameters;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Runs the NEAT training loop: creates the pacman clients, updates every game
+ * in a thread pool, and evolves (and saves) the population once all games are
+ * complete.
+ *
+ * <p>A training session never renders anything. {@link Main} draws a few of
+ * the games on top of a session, while {@link HeadlessMain} runs a session
+ * without any window or graphics context at all.
+ *
+ * <p>The session can either be updated manually with {@link #update()}, or
+ * run on its own simulation thread with {@link #start()}, so that ticks per
+ * second do not depend on the frame rate. When rendering alongside a running
+ * session, mark the drawn games {@link PacmanNeatClient#setRendered(boolean)
+ * rendered}: after each tick, they publish a snapshot of their state that
+ * {@link PacmanNeatClient#render draws}, so rendering never
+ * waits for the simulation.
+ *
+ * <p>With {@link #setAsyncEvolution(boolean) async evolution}, workers never
+ * sit idle waiting for the last few games of a generation: see
+ * {@link #setAsyncEvolution(boolean)}.
+ */
+public class TrainingSession implements Disposable {
+
+    private final @NotNull EventSystem events = new EventSystem();
+    private final @NotNull ReentrantLock generationLock = new ReentrantLock();
+    private volatile @NotNull List<PacmanNeatClient> managers = new CopyOnWriteArrayList<>();  // async evolution replaces games from worker threads
+    private final int totalGames;
+    private final boolean headless;
+
+    // simulation thread
+    private @Nullable Thread simulationThread;
+    private volatile boolean running;
+    private volatile boolean paused;
+    private volatile long ticks;
+    private final @NotNull LongAdder gameTicks = new LongAdder();  // summed over every game, see getGameTicks()
+
+    // execution
+    private @NotNull ExecutionMode executionMode = ExecutionMode.POOL;
+    private int ticksPerDispatch = 1;
+    private boolean timeWarp;
+    private boolean decisionPointsOnly;
+    private @NotNull GameRandom seeds = new GameRandom(System.nanoTime());  // 1 seed per game, guarded by episodeLock
+
+    // async evolution, guarded by episodeLock
+    private final @NotNull Object episodeLock = new Object();
+    private boolean asyncEvolution;
+    private int[] slotClients;  // slot (game id) -> client index
+    private boolean[] clientRunning;
+    private double[] clientScoreSum;
+    private int[] clientEpisodes;
+    private int evaluatedClients;
+    private int episodes;
+    private long generationStartNanos;
+
+    // deep learning
+    private Neat neat;
+    private NeatPrinter neatPrinter;
+    private NeatSaver neatSaver;
+    private ExecutorService threadPool;
+    private ShardedWorkers<PacmanNeatClient> workers;
+
+    /**
+     * Creates a new training session. Call {@link #create()} before updating.
+     *
+     * @param totalGames the number of games (and NEAT clients) to run at once
+     * @param headless   true if the games will never be rendered
+     */
+    public TrainingSession(int totalGames, boolean headless) {
+        this.totalGames = totalGames;
+        this.headless = headless;
+    }
+
+    /**
+     * Creates the NEAT population, the thread pool and the first generation of games.
+     */
+    public void create() {
+        neat = createNeat();
+        neatPrinter = new NeatPrinter(neat);
+        neatSaver = new NeatSaver(neat, getSaveFolder());
+
+        int processors = Runtime.getRuntime().availableProcessors();
+        if (executionMode == ExecutionMode.SHARDED)
+            workers = new ShardedWorkers<>(processors);
+        else
+            threadPool = Executors.newFixedThreadPool(processors);
+        System.out.println("Using " + processors + " threads (" + executionMode + ")");
+
+        slotClients = new int[totalGames];
+        clientRunning = new boolean[totalGames];
+        clientScoreSum = new double[totalGames];
+        clientEpisodes = new int[totalGames];
+
+        // When all games have ended, reset
+        events.registerListener(GameEndEvent.class, event -> {
+            int id = event.getGameManager().getConfig().id;
+            PacmanNeatClient manager = managers.get(id);
+            recordEpisode(id, manager.getClient().getScore());
+            manager.getGameCompleteFuture().complete(null);
+        });
+
+        // When a new pacman is created, set the behavior
+        events.registerListener(EntityPreSpawnEvent.class, event -> {
+            if (event.getEntityType() != EntityType.PACMAN)
+                return;
+
+            PacmanEntity.Config config = (PacmanEntity.Config) event.getConfig();
+            int id = event.getMaze().getLevelManager().getConfig().id;
+            config.behavior = new NeatPacmanBehavior(neat.getClients().get(slotClients[id]));
+            config.decisionPointsOnly = decisionPointsOnly;
+        });
+
+        events.registerListener(CreateMazeEvent.class, SpecialTrainingConditions.onCreateMaze());
+        events.registerListener(EntityPreSpawnEvent.class, SpecialTrainingConditions.onEntityPreSpawn());
+
+        reset();
+        synchronized (episodeLock) {
+            generationStartNanos = System.nanoTime();
+        }
+    }
+
+    public @NotNull Neat createNeat() {
+        // Change this to true/false as needed, if you want to load from file
+        if (true) {
+            // TODO: Change this to the exact file you want to load
+            File exactFile = new File("saves" + File.separator + "dec04-8" + File.separator + "generation-212.json");
+            // load exactFile contents to string
+            String json;
+            try {
+                json = new String(Files.readAllBytes(Paths.get(exactFile.getPath())));
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Invalid file: " + exactFile.getPath());
+            }
+            NeatImpl impl = NeatImpl.fromJson(json);
+            // modify this as needed
+            impl.updateNodeCounts(24, 4);  // Add 4 new inputs
+            //impl.updateClients(200);  // have 200 pacman games at once
+            return impl;
+        } else {
+            Parameters neatParameters = new Parameters();
+            neatParameters.setMutateWeightChance(0.75f);
+            neatParameters.setWeightCoefficient(1.0f);  // speciate on weight more often
+            neatParameters.setTargetClientsPerSpecies(12);  // targeting ~12 clients per species
+            neatParameters.setStagnationLimit(10);  // lower stagnation limit
+            neatParameters.setUseBiasNode(true);  // use bias node
+            return new NeatImpl(24, 4, totalGames, neatParameters);
+        }
+    }
+
+    public @NotNull File getSaveFolder() {
+        // Create the "saves" directory if it doesn't exist
+        File saveFolder = new File("saves");
+        saveFolder.mkdirs();
+
+        // Get the current date formatted as "oct26"
+        LocalDate now = LocalDate.now();
+        String datePart = now.format(DateTimeFormatter.ofPattern("MMMdd")).toLowerCase();
+
+        // Initialize the maximum number found for the current date
+        int maxNumber = 0;
+
+        // List all files in the "saves" directory
+        File[] files = saveFolder.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                String name = file.getName();
+                // Check if the file name starts with the date pattern
+                if (name.startsWith(datePart + "-")) {
+                    // Extract the number part after the date
+                    String numberPart = name.substring((datePart + "-").length());
+                    try {
+                        int num = Integer.parseInt(numberPart);
+                        if (num > maxNumber) {
+                            maxNumber = num;
+                        }
+                    } catch (NumberFormatException e) {
+                        // Ignore files that don't have a valid number suffix
+                    }
+                }
+            }
+        }
+
+        // The next available number is maxNumber + 1
+        String newFolderName = datePart + "-" + (maxNumber + 1);
+        File newFolder = new File(saveFolder, newFolderName);
+        newFolder.mkdirs();
+
+        System.out.println("Created folder: " + newFolder.getPath());
+        return newFolder;
+    }
+
+    /**
+     * Returns the games of the current generation. The index of each game
+     * matches the index of its NEAT client.
+     *
+     * <p>Each generation gets a new list, so callers on other threads can
+     * safely iterate the returned list while the next generation is created.
+     * With async evolution, worker threads replace the games of the list as
+     * episodes end; iterating sees a consistent copy, and every game it sees
+     * is fully created.
+     *
+     * @return the games of the current generation
+     */
+    public @NotNull List<PacmanNeatClient> getManagers() {
+        return managers;
+    }
+
+    /**
+     * Returns the lock held while one generation is replaced by the next (and
+     * the population is evolved). Games never need it, since they are drawn
+     * from snapshots, but renderers reading the genomes should only
+     * {@link ReentrantLock#tryLock() try} to lock it, and skip them if the
+     * population is evolving.
+     *
+     * @return the generation lock
+     */
+    public @NotNull ReentrantLock getGenerationLock() {
+        return generationLock;
+    }
+
+    /**
+     * Returns the total number of ticks simulated by this session. Each tick
+     * advances every running game once, so with
+     * {@link #setTimeWarp(boolean) time warp} a game may move further than 1
+     * tick in 1 session tick; see {@link #getGameTicks()}.
+     *
+     * @return the total number of ticks
+     */
+    public long getTicks() {
+        return ticks;
+    }
+
+    /**
+     * Returns the total number of game ticks simulated by every game of this
+     * session, including the frozen ticks skipped by
+     * {@link #setTimeWarp(boolean) time warp}.
+     *
+     * @return the total number of game ticks
+     */
+    public long getGameTicks() {
+        return gameTicks.sum();
+    }
+
+    public @NotNull ExecutionMode getExecutionMode() {
+        return executionMode;
+    }
+
+    /**
+     * Sets how games are distributed between threads. Must be called before
+     * {@link #create()}.
+     *
+     * @param executionMode the execution mode
+     */
+    public void setExecutionMode(@NotNull ExecutionMode executionMode) {
+        if (threadPool != null || workers != null)
+            throw new IllegalStateException("Execution mode must be set before create()");
+        this.executionMode = executionMode;
+    }
+
+    public int getTicksPerDispatch() {
+        return ticksPerDispatch;
+    }
+
+    /**
+     * Sets how many ticks each game is advanced per {@link #update()} in
+     * {@link ExecutionMode#SHARDED} mode. Higher values mean less
+     * synchronization between threads, but rendered games will skip frames.
+     *
+     * @param ticksPerDispatch the number of ticks per dispatch, at least 1
+     */
+    public void setTicksPerDispatch(int ticksPerDispatch) {
+        if (ticksPerDispatch < 1)
+            throw new IllegalArgumentException("ticksPerDispatch must be at least 1, got " + ticksPerDispatch);
+        this.ticksPerDispatch = ticksPerDispatch;
+    }
+
+    public boolean isTimeWarp() {
+        return timeWarp;
+    }
+
+    /**
+     * Sets whether games skip their frozen ticks (the start of a level, and
+     * the pause after eating a ghost) instead of simulating them 1 by 1. A frozen interval then takes a single step, on top of the tick
+     * that follows it, and games end in exactly the same state. See
+     * {@link GameManager#skipFrozenTicks()}. Rendered games skip their "ready" pause.
+     *
+     * @param timeWarp true to skip frozen ticks
+     */
+    public void setTimeWarp(boolean timeWarp) {
+        this.timeWarp = timeWarp;
+    }
+
+    public boolean isDecisionPointsOnly() {
+        return decisionPointsOnly;
+    }
+
+    /**
+     * Sets whether the networks are only asked for a direction at decision
+     * points, instead of every tick. See {@link PacmanEntity.Config#decisionPointsOnly}.
+     * Off by default, since networks trained this way play differently when
+     * asked every tick (like in the {@link Tournament}). Must be called before
+     * {@link #create()}.
+     *
+     * @param decisionPointsOnly true to skip the networks in corridors
+     */
+    public void setDecisionPointsOnly(boolean decisionPointsOnly) {
+        this.decisionPointsOnly = decisionPointsOnly;
+    }
+
+    /**
+     * Sets the seed that every game's {@link GameManager.Config#seed seed} is
+     * drawn from. Games are seeded in the order they are created, so sessions
+     * with the same seed replay the same games (unless async evolution
+     * changes the order games are created in). Must be called before
+     * {@link #create()}.
+     *
+     * @param seed the seed of the session
+     */
+    public void setSeed(long seed) {
+        synchronized (episodeLock) {
+            this.seeds = new GameRandom(seed);
+        }
+    }
+
+    public boolean isAsyncEvolution() {
+        return asyncEvolution;
+    }
+
+    /**
+     * Enables or disables async evolution. By default, the population is only
+     * evolved once every game is complete, so near the end of a generation
+     * most threads are idle while the last few games finish.
+     *
+     * <p>With async evolution, as soon as a game ends, a new game (episode) is
+     * started in its place for the client with the fewest episodes so far
+     * that isn't already playing. The fitness of each client is the average
+     * score of its episodes. Once every client has completed at least 1
+     * episode, any extra episodes still running are dropped and the population
+     * is evolved.
+     *
+     * @param asyncEvolution true to enable async evolution
+     */
+    public void setAsyncEvolution(boolean asyncEvolution) {
+        this.asyncEvolution = asyncEvolution;
+    }
+
+    public boolean isPaused() {
+        return paused;
+    }
+
+    public void setPaused(boolean paused) {
+        this.paused = paused;
+    }
+
+    public void reset() {
+        List<PacmanNeatClient> oldManagers = managers;
+        List<PacmanNeatClient> newManagers = new ArrayList<>(totalGames);
+
+        synchronized (episodeLock) {
+            Arrays.fill(clientRunning, true);
+            Arrays.fill(clientScoreSum, 0.0);
+            Arrays.fill(clientEpisodes, 0);
+            evaluatedClients = 0;
+            episodes = 0;
+        }
+
+        for (int i = 0; i < totalGames; i++) {
+            newManagers.add(createGame(i, i));
+        }
+        this.managers = new CopyOnWriteArrayList<>(newManagers);
+
+        for (PacmanNeatClient manager : oldManagers) {
+            disposeLater(manager);
+        }
+    }
+
+    /**
+     * Creates a new game in the given slot, played by the given client.
+     *
+     * @param slot   the slot of the game, used as the game id
+     * @param client the index of the NEAT client playing the game
+     * @return the new game
+     */
+    private @NotNull PacmanNeatClient createGame(int slot, int client) {
+        slotClients[slot] = client;
+
+        GameManager.Config config = new GameManager.Config();
+        config.id = slot;
+        synchronized (episodeLock) {
+            config.seed = seeds.nextLong();
+        }
+        config.levelsPreset = "tournament_levels.json"; // Use tournament levels
+        config.handicap = 8; // Set handicap to match tournament settings
+        config.headless = headless;
+        GameManager gameManager = new GameManager(events, config);
+        gameManager.nextLevel();
+        gameManager.setExtraLives(0);
+
+        PacmanNeatClient neatClient = new PacmanNeatClient(neat, neat.getClients().get(client));
+        neatClient.setGameManager(gameManager);
+        return neatClient;
+    }
+
+    private void disposeLater(@NotNull PacmanNeatClient manager) {
+        // Textures may only be disposed of on the rendering thread
+        if (headless || Gdx.app == null)
+            manager.dispose();
+        else
+            Gdx.app.postRunnable(manager::dispose);
+    }
+
+    /**
+     * Records the final score of a game that just ended.
+     *
+     * @param slot  the slot of the game
+     * @param score the final score of the client in that game
+     */
+    private void recordEpisode(int slot, double score) {
+        synchronized (episodeLock) {
+            int client = slotClients[slot];
+            clientRunning[client] = false;
+            clientScoreSum[client] += score;
+            if (clientEpisodes[client]++ == 0)
+                evaluatedClients++;
+            episodes++;
+        }
+    }
+
+    /**
+     * Starts a new episode in the slot of a game that just ended, for the
+     * client with the fewest episodes that isn't already playing. The slot is
+     * left empty (and retried next tick) if every client is already playing.
+     *
+     * @param ended the game that ended
+     */
+    private void startNextEpisode(@NotNull PacmanNeatClient ended) {
+        int slot = ended.getGameManager().getConfig().id;
+        if (managers.get(slot) != ended)
+            return;
+
+        int next = -1;
+        synchronized (episodeLock) {
+            if (evaluatedClients >= totalGames)
+                return;
+
+            for (int i = 0; i < totalGames; i++) {
+                if (!clientRunning[i] && (next == -1 || clientEpisodes[i] < clientEpisodes[next]))
+                    next = i;
+            }
+            if (next == -1)
+                return;
+            clientRunning[next] = true;
+        }
+
+        managers.set(slot, createGame(slot, next));
+        disposeLater(ended);
+    }
+
+    /**
+     * Returns true once the current generation has been fully evaluated.
+     *
+     * @return true if the population should be evolved
+     */
+    private boolean isGenerationComplete() {
+        if (asyncEvolution) {
+            synchronized (episodeLock) {
+                return evaluatedClients >= totalGames;
+            }
+        }
+        return managers.stream().map(PacmanNeatClient::getGameCompleteFuture).allMatch(CompletableFuture::isDone);
+    }
+
+    /**
+     * Evolves the population, and starts the next generation.
+     */
+    private void nextGeneration() {
+        int episodes;
+        double seconds;
+        synchronized (episodeLock) {
+            // In async mode, the fitness is the average score of all episodes
+            if (asyncEvolution) {
+                for (int i = 0; i < totalGames; i++) {
+                    neat.getClients().get(i).setScore(clientScoreSum[i] / clientEpisodes[i]);
+                }
+            }
+            episodes = this.episodes;
+            seconds = (System.nanoTime() - generationStartNanos) / 1e9;
+        }
+
+        reset();
+        System.out.println(neatPrinter.render());
+        System.out.printf("Evaluations: %d (%.1f/s)%n", episodes, episodes / seconds);
+        neatSaver.save();
+        neat.evolve();
+
+        // Saving and evolving are not part of the next generation's evaluations
+        synchronized (episodeLock) {
+            generationStartNanos = System.nanoTime();
+        }
+    }
+
+    /**
+     * Starts a simulation thread that calls {@link #update()} as fast as the
+     * CPU allows (unless {@link #setPaused(boolean) paused}).
+     */
+    public void start() {
+        if (simulationThread != null)
+            throw new IllegalStateException("Simulation is already running");
+
+        running = true;
+        simulationThread = new Thread(() -> {
+            while (running) {
+                if (paused) {
+                    LockSupport.parkNanos(1_000_000L);
+                    continue;
+                }
+
+                try {
+                    update();
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        }, "Pacman Simulation");
+        simulationThread.setDaemon(true);
+        simulationThread.start();
+    }
+
+    /**
+     * Stops the simulation thread started by {@link #start()}, waiting for the
+     * current tick to finish.
+     */
+    public void stop() {
+        running = false;
+        if (simulationThread == null)
+            return;
+
+        try {
+            simulationThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        simulationThread = null;
+    }
+
+    /**
+     * Advances every running game by 1 tick. When all games are complete, the
+     * population is saved and evolved, and a new generation of games starts.
+     *
+     * <p>Rendered games publish a snapshot after their tick instead of being
+     * drawn directly, so the simulation never waits for rendering.
+     */
+    public void update() {
+        // If all games are complete, reset
+        if (isGenerationComplete()) {
+            generationLock.lock();
+            try {
+                nextGeneration();
+            } finally {
+                generationLock.unlock();
+            }
+        }
+
+        if (executionMode == ExecutionMode.SHARDED) {
+            int ticksPerDispatch = this.ticksPerDispatch;
+            workers.run(managers, manager -> tick(manager, ticksPerDispatch));
+            ticks += ticksPerDispatch;
+            return;
+        }
+
+        // Update games
+        List<Future<?>> futures = new ArrayList<>();
+        for (PacmanNeatClient manager : managers) {
+            if (manager.getGameCompleteFuture().isDone() && !asyncEvolution)
+                continue;
+
+            futures.add(threadPool.submit(() -> tick(manager, 1)));
+        }
+
+        // Wait for all games to be updated
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+
+        ticks++;
+    }
+
+    /**
+     * Updates 1 game by up to <code>ticks</code> ticks (stopping early if the
+     * game ends), then publishes a frame of it if it is rendered.
+     *
+     * <p>{@link GameManager#postUpdate()} is called here as well, since
+     * sprites are created lazily and may safely be loaded off the rendering
+     * thread.
+     *
+     * @param manager the game to update
+     * @param ticks   the maximum number of ticks to advance
+     */
+    private void tick(@NotNull PacmanNeatClient manager, int ticks) {
+        int simulated = 0;
+        for (int i = 0; i < ticks && !manager.getGameCompleteFuture().isDone(); i++) {
+            if (timeWarp)
+                simulated += manager.getGameManager().skipFrozenTicks();
+            manager.getGameManager().update();
+            manager.getGameManager().postUpdate();
+            simulated++;
+        }
+        gameTicks.add(simulated);
+        if (manager.isRendered())
+            manager.publishFrame();
+
+        if (asyncEvolution && manager.getGameCompleteFuture().isDone())
+            startNextEpisode(manager);
+    }
+
+    /**
+     * Stops the simulation and the thread pool, and disposes of every game.
+     */
+    @Override
+    public void dispose() {
+        stop();
+        if (threadPool != null)
+            threadPool.shutdownNow();
+        if (workers != null)
+            workers.dispose();
+        for (PacmanNeatClient manager : managers) {
+            manager.dispose();
+        }
+        managers = new CopyOnWriteArrayList<>();
+    }
+
+    /**
+     * How the games of a session are distributed between threads.
+     */
+    public enum ExecutionMode {
+
+        /**
+         * Every tick, each game is submitted to a thread pool as its own task,
+         * and the session waits for all of them.
+         */
+        POOL,
+
+        /**
+         * Each worker thread owns a stable shard of the games, and advances
+         * each of its games {@link TrainingSession#setTicksPerDispatch(int) many ticks} per
+         * dispatch. Idle workers steal games from busy shards.
+         */
+        SHARDED
+    }
+}
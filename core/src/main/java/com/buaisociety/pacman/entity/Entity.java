@@ -3,9 +3,9 @@ package com.buaisociety.pacman.entity;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.buaisociety.pacman.entity.behavior.Behavior;
 import com.buaisociety.pacman.maze.Maze;
-import com.buaisociety.pacman.maze.Tile;
 import com.buaisociety.pacman.util.Disposable;
 import com.buaisociety.pacman.util.NumberUtil;
+import com.buaisociety.pacman.util.Zobrist;
 import org.jetbrains.annotations.NotNull;
 import org.joml.Vector2d;
 import org.joml.Vector2dc;
@@ -25,6 +25,8 @@ public abstract class Entity implements Disposable {
     protected Vector2dc lastPosition;
     protected Vector2dc position;
     protected Direction direction;
+    private long stateKey;  // this entity's part of Maze#getStateHash(), see updateStateKey()
+    private boolean tracked;  // true while the entity is in its maze's entities list
 
     protected Entity(@NotNull Maze maze, @NotNull EntityType type) {
         this.maze = maze;
@@ -53,12 +55,81 @@ public abstract class Entity implements Disposable {
     }
 
     public void setPosition(@NotNull Vector2dc position) {
+        setPosition(position.x(), position.y());
+    }
+
+    /**
+     * Moves the entity to the given pixel position, without allocating a
+     * vector.
+     *
+     * @param x the x-coordinate, in pixels
+     * @param y the y-coordinate, in pixels
+     */
+    public void setPosition(double x, double y) {
+        int fromX = tileX();
+        int fromY = tileY();
         ((Vector2d) this.lastPosition).set(this.position);
-        ((Vector2d) this.position).set(position);
+        ((Vector2d) this.position).set(x, y);
+
+        // Let the maze know which tile we are on, so it can look up entities by tile
+        if (fromX != tileX() || fromY != tileY()) {
+            maze.onEntityMove(this, fromX, fromY);
+            updateStateKey();
+        }
+    }
+
+    /**
+     * Returns the x-coordinate of the entity, in pixels. Unlike
+     * {@link #getPosition()}, this does not allocate.
+     *
+     * @return the x-coordinate of the entity
+     */
+    public double posX() {
+        return position.x();
+    }
+
+    /**
+     * Returns the y-coordinate of the entity, in pixels. Unlike
+     * {@link #getPosition()}, this does not allocate.
+     *
+     * @return the y-coordinate of the entity
+     */
+    public double posY() {
+        return position.y();
     }
 
     public @NotNull Vector2i getTilePosition() {
-        return maze.toTileCoords(position);
+        return new Vector2i(tileX(), tileY());
+    }
+
+    /**
+     * Returns the x-coordinate of the tile the entity is on. Unlike
+     * {@link #getTilePosition()}, this does not allocate.
+     *
+     * @return the x-coordinate of the current tile
+     */
+    public int tileX() {
+        return (int) position.x() / Maze.TILE_SIZE;
+    }
+
+    /**
+     * Returns the y-coordinate of the tile the entity is on. Unlike
+     * {@link #getTilePosition()}, this does not allocate.
+     *
+     * @return the y-coordinate of the current tile
+     */
+    public int tileY() {
+        return (int) position.y() / Maze.TILE_SIZE;
+    }
+
+    /**
+     * Returns the flattened index (<code>y * width + x</code>) of the tile the
+     * entity is on. See {@link Maze#getTileIndex(int, int)}.
+     *
+     * @return the index of the current tile
+     */
+    public int tileIndex() {
+        return maze.getTileIndex(tileX(), tileY());
     }
 
     public @NotNull Vector2i getSpawnTile() {
@@ -71,6 +142,134 @@ public abstract class Entity implements Disposable {
 
     public void setDirection(@NotNull Direction direction) {
         this.direction = direction;
+        updateStateKey();
+    }
+
+    /**
+     * Returns true while this entity is in its maze's list of entities. Until
+     * then, the maze ignores its moves and state changes.
+     *
+     * @return true if the maze tracks this entity
+     */
+    public boolean isTracked() {
+        return tracked;
+    }
+
+    /**
+     * Called by the maze when this entity is added to or removed from its
+     * list of entities, so the maze can tell in O(1).
+     *
+     * @param tracked true if the entity was added
+     */
+    public void setTracked(boolean tracked) {
+        this.tracked = tracked;
+    }
+
+    /**
+     * Returns this entity's Zobrist key: its part of the maze's
+     * {@link Maze#getStateHash() state hash}. The key covers the tile the
+     * entity is on, its direction, and {@link #getHashState()}.
+     *
+     * @return the key of this entity's current state
+     */
+    public long getStateKey() {
+        return stateKey;
+    }
+
+    /**
+     * Returns the extra state that is part of this entity's
+     * {@link #getStateKey() key}, like the state of a ghost. Subclasses that
+     * override this must call {@link #updateStateKey()} whenever it changes.
+     *
+     * @return a small number describing the entity's state
+     */
+    protected int getHashState() {
+        return 0;
+    }
+
+    /**
+     * Returns the value that tells apart entities of the same type in
+     * {@link #getStateKey()}, so 2 entities swapping tiles changes the hash.
+     *
+     * @return the identity of this entity
+     */
+    protected long getHashIdentity() {
+        return 0;
+    }
+
+    /**
+     * Recomputes {@link #getStateKey()}, and updates the maze's state hash if
+     * the key changed. Called whenever the tile, the direction or the
+     * {@link #getHashState() hash state} of the entity changes.
+     */
+    protected final void updateStateKey() {
+        long key = Zobrist.entityKey(type.ordinal(), getHashIdentity(), tileIndex(), direction.ordinal(), getHashState());
+        if (key == stateKey)
+            return;
+
+        long previous = stateKey;
+        stateKey = key;
+        maze.onEntityStateChange(this, previous ^ key);
+    }
+
+    /**
+     * Creates a new entity like this one in the given maze, for simulating
+     * the game on a {@link Maze#createReplica(Behavior) replica}. Ghosts get
+     * their own chase behaviors, so the copy can be updated on another
+     * thread; its state is set afterward with {@link #restoreState(EntityState)}.
+     *
+     * @param maze the maze of the copy
+     * @return the new entity, not yet added to the maze
+     */
+    public abstract @NotNull Entity createReplica(@NotNull Maze maze);
+
+    /**
+     * Copies the simulation state of this entity (position, direction, timers
+     * and so on) into the given buffer. See
+     * {@link com.buaisociety.pacman.maze.Maze#saveSnapshot(com.buaisociety.pacman.maze.GameSnapshot)}.
+     *
+     * @param state the buffer to fill
+     */
+    public final void saveState(@NotNull EntityState state) {
+        state.x = position.x();
+        state.y = position.y();
+        state.lastX = lastPosition.x();
+        state.lastY = lastPosition.y();
+        state.direction = direction;
+        state.ticksAlive = ticksAlive;
+        saveData(state.data);
+    }
+
+    /**
+     * Puts this entity back into a state saved by
+     * {@link #saveState(EntityState)}. Unlike {@link #setPosition(double, double)},
+     * this does not notify the maze; the maze re-adds restored entities itself.
+     *
+     * @param state the saved state
+     */
+    public final void restoreState(@NotNull EntityState state) {
+        ((Vector2d) position).set(state.x, state.y);
+        ((Vector2d) lastPosition).set(state.lastX, state.lastY);
+        direction = state.direction;
+        ticksAlive = state.ticksAlive;
+        restoreData(state.data);
+        updateStateKey();
+    }
+
+    /**
+     * Saves the state of the subclass, for {@link #saveState(EntityState)}.
+     *
+     * @param data the buffer to fill, with room for {@link EntityState#DATA_SIZE} ints
+     */
+    protected void saveData(int[] data) {
+    }
+
+    /**
+     * Restores the state saved by {@link #saveData(int[])}.
+     *
+     * @param data the saved state
+     */
+    protected void restoreData(int[] data) {
     }
 
     /**
@@ -114,16 +313,16 @@ public abstract class Entity implements Disposable {
      * @return true if the entity can move in the given direction.
      */
     public boolean canMove(@NotNull Direction direction) {
-        Tile current = maze.getTile(getTilePosition());
-        Tile next = current.getNeighbor(direction);
+        int current = maze.getTileIndex(tileX(), tileY());
+        int next = maze.getNeighbor(current, direction);
 
         // When the next tile is not passable, the only case we can move forward
         // in that direction is when we still have some space to move in the
         // current tile (in pixel coordinates).
-        if (!next.getState().isPassable()) {
-            Vector2i currentPixel = new Vector2i((int) position.x(), (int) position.y());
-            Vector2i toCenter = current.getCenterPixel().sub(currentPixel);
-            int dot = toCenter.x * direction.getDx() + toCenter.y * direction.getDy();
+        if (!maze.isPassable(next)) {
+            int toCenterX = maze.getCenterPixelX(current) - (int) position.x();
+            int toCenterY = maze.getCenterPixelY(current) - (int) position.y();
+            int dot = toCenterX * direction.getDx() + toCenterY * direction.getDy();
 
             return Math.abs(dot) > 0;
         }
@@ -132,31 +331,31 @@ public abstract class Entity implements Disposable {
     }
 
     public void move(@NotNull Direction direction, double speed, boolean fixCenter) {
-        Vector2d position = getPosition();
+        double x = position.x();
+        double y = position.y();
 
-        Tile currentTile = maze.getTile(getTilePosition());
-        Tile nextTile = currentTile.getNeighbor(direction);
+        int currentTile = maze.getTileIndex(tileX(), tileY());
+        int nextTile = maze.getNeighbor(currentTile, direction);
 
         // To prevent overshooting, we should move towards the center of the current tile
-        if (!nextTile.getState().isPassable() && this instanceof PacmanEntity) {
-            Vector2i center = currentTile.getCenterPixel();
-            position.x = NumberUtil.moveTowards(position.x(), center.x(), speed);
-            position.y = NumberUtil.moveTowards(position.y(), center.y(), speed);
+        if (!maze.isPassable(nextTile) && this instanceof PacmanEntity) {
+            x = NumberUtil.moveTowards(x, maze.getCenterPixelX(currentTile), speed);
+            y = NumberUtil.moveTowards(y, maze.getCenterPixelY(currentTile), speed);
         } else {
-            position.add(speed * direction.getDx(), speed * direction.getDy());
+            x += speed * direction.getDx();
+            y += speed * direction.getDy();
         }
 
         if (fixCenter) {
-            Vector2i center = currentTile.getCenterPixel();
             if (direction.isHorizontal()) {
-                position.y = NumberUtil.moveTowards(position.y(), center.y(), speed);
+                y = NumberUtil.moveTowards(y, maze.getCenterPixelY(currentTile), speed);
             } else {
-                position.x = NumberUtil.moveTowards(position.x(), center.x(), speed);
+                x = NumberUtil.moveTowards(x, maze.getCenterPixelX(currentTile), speed);
             }
         }
 
         // When going through a tunnel, we need to wrap around the maze.
-        setPosition(maze.getWrappedPosition(position));
+        setPosition(maze.wrapPixelX(x), maze.wrapPixelY(y));
     }
 
     /**
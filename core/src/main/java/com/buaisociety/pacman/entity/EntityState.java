@@ -0,0 +1,25 @@
+package com.buaisociety.pacman.entity;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A reusable buffer holding the simulation state of 1 entity, filled by
+ * {@link Entity#saveState(EntityState)} and read back by
+ * {@link Entity#restoreState(EntityState)}. Sprites, configs and behaviors
+ * (including any state a behavior keeps) are not part of the state.
+ */
+public final class EntityState {
+
+    /**
+     * The number of ints each entity may store, see {@link Entity#saveState(EntityState)}.
+     */
+    public static final int DATA_SIZE = 12;
+
+    double x;
+    double y;
+    double lastX;
+    double lastY;
+    @Nullable Direction direction;
+    int ticksAlive;
+    final int[] data = new int[DATA_SIZE];  // subclass state, see Entity#saveData(int[])
+}
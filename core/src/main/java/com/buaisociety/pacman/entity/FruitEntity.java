@@ -1,7 +1,6 @@
 package com.buaisociety.pacman.entity;
 
 import com.badlogic.gdx.graphics.Color;
-import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.buaisociety.pacman.entity.behavior.Behavior;
 import com.buaisociety.pacman.maze.Maze;
@@ -9,18 +8,17 @@ import com.buaisociety.pacman.sprite.CutoutSpriteSheet;
 import com.buaisociety.pacman.sprite.GrayscaleSpriteSheet;
 import com.buaisociety.pacman.sprite.Particle;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.joml.Vector2d;
 import org.joml.Vector2i;
 
-import java.util.concurrent.ThreadLocalRandom;
-
 public class FruitEntity extends Entity {
 
-    public static @NotNull CutoutSpriteSheet fruitSpriteShare = new CutoutSpriteSheet(new Texture("sprites/fruit-sprite.png"), 16);
-    public static @NotNull GrayscaleSpriteSheet bonusSpriteShare = new GrayscaleSpriteSheet(new Texture("sprites/bonus-points-sprite.png"), new Vector2i(8 * 4, 8 * 2));
+    private static @Nullable CutoutSpriteSheet fruitSpriteShare;
+    private static @Nullable GrayscaleSpriteSheet bonusSpriteShare;
 
-    private final @NotNull CutoutSpriteSheet fruitSprite;
-    private final @NotNull GrayscaleSpriteSheet bonusSprite;
+    private @Nullable CutoutSpriteSheet fruitSprite;
+    private @Nullable GrayscaleSpriteSheet bonusSprite;
     private final int fruitTileX;
     private int ticksLeft;
     private boolean isRemove;
@@ -45,6 +43,42 @@ public class FruitEntity extends Entity {
         this.ticksLeft = config.ticksLeft;
     }
 
+    /**
+     * Returns the fruit sprite sheet shared by all fruits that do not specify
+     * their own. It is created the first time a fruit is rendered.
+     *
+     * @return the shared fruit sprite sheet
+     */
+    public static @NotNull CutoutSpriteSheet getFruitSpriteShare() {
+        if (fruitSpriteShare == null)
+            fruitSpriteShare = new CutoutSpriteSheet("sprites/fruit-sprite.png", 16);
+        return fruitSpriteShare;
+    }
+
+    /**
+     * Returns the bonus points sprite sheet shared by all fruits that do not
+     * specify their own. It is created the first time a bonus is rendered.
+     *
+     * @return the shared bonus points sprite sheet
+     */
+    public static @NotNull GrayscaleSpriteSheet getBonusSpriteShare() {
+        if (bonusSpriteShare == null)
+            bonusSpriteShare = new GrayscaleSpriteSheet("sprites/bonus-points-sprite.png", new Vector2i(8 * 4, 8 * 2));
+        return bonusSpriteShare;
+    }
+
+    private @NotNull CutoutSpriteSheet getFruitSprite() {
+        if (fruitSprite == null)
+            fruitSprite = getFruitSpriteShare();
+        return fruitSprite;
+    }
+
+    private @NotNull GrayscaleSpriteSheet getBonusSprite() {
+        if (bonusSprite == null)
+            bonusSprite = getBonusSpriteShare();
+        return bonusSprite;
+    }
+
     /**
      * Returns true if the entity should be removed from the game (permanent death).
      *
@@ -55,6 +89,26 @@ public class FruitEntity extends Entity {
         return isRemove;
     }
 
+    @Override
+    public @NotNull FruitEntity createReplica(@NotNull Maze maze) {
+        Config config = new Config();
+        config.spawnPixel = new Vector2d(position);
+        config.ticksLeft = ticksLeft;
+        return new FruitEntity(maze, config);
+    }
+
+    @Override
+    protected void saveData(int[] data) {
+        data[0] = ticksLeft;
+        data[1] = isRemove ? 1 : 0;
+    }
+
+    @Override
+    protected void restoreData(int[] data) {
+        ticksLeft = data[0];
+        isRemove = data[1] != 0;
+    }
+
     /**
      * Returns the speed of the entity in pixels per frame.
      *
@@ -90,8 +144,8 @@ public class FruitEntity extends Entity {
             isRemove = true;
         }
 
-        Vector2i pacmanTile = maze.getPacman().getTilePosition();
-        if (pacmanTile.equals(getTilePosition())) {
+        PacmanEntity pacman = maze.getPacman();
+        if (pacman.tileX() == tileX() && pacman.tileY() == tileY()) {
             isRemove = true;
 
             int score = switch (maze.getLevelManager().getLevel()) {
@@ -118,7 +172,7 @@ public class FruitEntity extends Entity {
 
             maze.getLevelManager().incrementScore(score);
             Particle particle = new Particle(
-                bonusSprite,
+                this::getBonusSprite,
                 new Vector2i(spriteX, 0),
                 new Color[]{ Color.CLEAR, new Color(0xffb7ffff) }
             );
@@ -135,6 +189,7 @@ public class FruitEntity extends Entity {
      */
     @Override
     public void render(@NotNull SpriteBatch batch) {
+        CutoutSpriteSheet fruitSprite = getFruitSprite();
         int pixelX = (int) position.x() - fruitSprite.getTileSize().x() / 2 + 1;
         int pixelY = (int) position.y() - fruitSprite.getTileSize().y() / 2 + 1;
         fruitSprite.setCurrentTile(fruitTileX, 0);
@@ -146,17 +201,17 @@ public class FruitEntity extends Entity {
      */
     @Override
     public void dispose() {
-        if (fruitSprite != fruitSpriteShare)
+        if (fruitSprite != null && fruitSprite != fruitSpriteShare)
             fruitSprite.dispose();
-        if (bonusSprite != bonusSpriteShare)
+        if (bonusSprite != null && bonusSprite != bonusSpriteShare)
             bonusSprite.dispose();
     }
 
 
     public static class Config {
         public @NotNull Vector2d spawnPixel = new Vector2d();
-        public @NotNull CutoutSpriteSheet fruitSprite = fruitSpriteShare;
-        public @NotNull GrayscaleSpriteSheet bonusSprite = bonusSpriteShare;
-        public int ticksLeft = ThreadLocalRandom.current().nextInt(9 * 60, 10 * 60);
+        public @Nullable CutoutSpriteSheet fruitSprite = null;  // null means the shared sprite sheet
+        public @Nullable GrayscaleSpriteSheet bonusSprite = null;  // null means the shared sprite sheet
+        public int ticksLeft = 9 * 60;  // Maze#spawnFruit() picks a random time between 9 and 10 seconds
     }
 }
@@ -1,14 +1,12 @@
 package com.buaisociety.pacman.entity;
 
 import com.badlogic.gdx.graphics.Color;
-import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.buaisociety.pacman.entity.behavior.AggressiveChaseBehavior;
 import com.buaisociety.pacman.entity.behavior.Behavior;
 import com.buaisociety.pacman.entity.behavior.RandomDirectionBehavior;
 import com.buaisociety.pacman.entity.behavior.StaticTargetBehavior;
 import com.buaisociety.pacman.maze.Maze;
-import com.buaisociety.pacman.maze.Tile;
 import com.buaisociety.pacman.maze.TileState;
 import com.buaisociety.pacman.sprite.GrayscaleSpriteSheet;
 import com.buaisociety.pacman.util.NumberUtil;
@@ -23,7 +21,7 @@ public class GhostEntity extends Entity {
         20, 30, 40, 40, 40, 50, 50, 50, 60, 60, 60, 80, 80, 80, 100, 100, 100, 100, 120, 120, 120
     };
 
-    private final GrayscaleSpriteSheet spriteSheet;
+    private @Nullable GrayscaleSpriteSheet spriteSheet;
     private int animationFrame;
 
     private final boolean isElroy;  // Blinky becomes "Elroy" and moves faster
@@ -38,6 +36,7 @@ public class GhostEntity extends Entity {
 
     // Vars used during #reset()
     private final @NotNull Vector2i spawnPixel;
+    private final @NotNull Vector2i reviveTile;
     private final @NotNull Direction spawnDirection;
     private final boolean spawnReleased;
 
@@ -58,6 +57,7 @@ public class GhostEntity extends Entity {
         this.eaten = new StaticTargetBehavior(maze.toTileCoords(new Vector2d(config.reviveTile)));
 
         this.spawnPixel = config.spawnPixel;
+        this.reviveTile = config.reviveTile;
         this.spawnDirection = config.spawnDirection;
         this.spawnReleased = config.spawnReleased;
         reset();
@@ -72,13 +72,13 @@ public class GhostEntity extends Entity {
     @Override
     public void reset() {
         // Set twice to update lastPosition
-        setPosition(new Vector2d(spawnPixel));
-        setPosition(new Vector2d(spawnPixel));
-        direction = spawnDirection;
+        setPosition(spawnPixel.x, spawnPixel.y);
+        setPosition(spawnPixel.x, spawnPixel.y);
         released = spawnReleased;
 
         state = maze.isGhostChase() ? GhostState.CHASE : GhostState.SCATTER;
         nextDirection = null;
+        setDirection(spawnDirection);
     }
 
     public @NotNull Vector2i getScatterTile() {
@@ -119,10 +119,8 @@ public class GhostEntity extends Entity {
 
         // Ghosts immediately switch directions when they change state. Sometimes,
         // this switch can cause the ghost to back into a wall. If this happens,
-        // we should try other directions
+        // we should try other directions. This is expected, so it is not logged
         if (!canMove(direction.behind())) {
-            System.out.println("Ghost can't move in direction: " + direction);
-
             if (canMove(direction.right())) {
                 this.direction = direction.right();
             } else if (canMove(direction.left())) {
@@ -134,6 +132,58 @@ public class GhostEntity extends Entity {
         }
 
         this.state = state;
+        updateStateKey();
+    }
+
+    @Override
+    public @NotNull GhostEntity createReplica(@NotNull Maze maze) {
+        Config config = new Config();
+        config.isElroy = isElroy;
+        try {
+            // Chase behaviors may remember things about their maze (like where blinky is)
+            config.chase = chase.getClass().getConstructor().newInstance();
+        } catch (Exception e) {
+            throw new IllegalStateException("Cannot copy chase behavior " + chase.getClass().getName() + ", it needs a public no-args constructor", e);
+        }
+        config.scatterTile = new Vector2i(scatterTile);
+        config.spawnPixel = new Vector2i(spawnPixel);
+        config.spawnDirection = spawnDirection;
+        config.spawnReleased = spawnReleased;
+        config.reviveTile = new Vector2i(reviveTile);
+        config.colorsAlive = colorsAlive;
+        config.colorsFrightened = colorsFrightened;
+        config.colorsFlash = colorsFlash;
+        config.colorsEaten = colorsEaten;
+        return new GhostEntity(maze, config);
+    }
+
+    @Override
+    protected void saveData(int[] data) {
+        data[0] = animationFrame;
+        data[1] = localDotCounter;
+        data[2] = released ? 1 : 0;
+        data[3] = state.ordinal();
+        data[4] = nextDirection == null ? -1 : nextDirection.ordinal();
+    }
+
+    @Override
+    protected void restoreData(int[] data) {
+        animationFrame = data[0];
+        localDotCounter = data[1];
+        released = data[2] != 0;
+        state = GhostState.values()[data[3]];
+        nextDirection = data[4] == -1 ? null : Direction.values()[data[4]];
+    }
+
+    @Override
+    protected int getHashState() {
+        return state.ordinal();
+    }
+
+    @Override
+    protected long getHashIdentity() {
+        // Every ghost of a level has its own scatter corner
+        return (long) scatterTile.x << 32 | (scatterTile.y & 0xFFFFFFFFL);
     }
 
     @Override
@@ -156,7 +206,7 @@ public class GhostEntity extends Entity {
         }
 
         // When entering a tunnel, the ghosts suffer a severe speed penalty
-        if (maze.getTile(getTilePosition()).getState() == TileState.TUNNEL) {
+        if (maze.getTileState(tileIndex()) == TileState.TUNNEL) {
             return BASE_SPEED * switch (level) {
                 case 1 -> 0.40;
                 case 2, 3, 4 -> 0.45;
@@ -207,7 +257,7 @@ public class GhostEntity extends Entity {
     @Override
     public void update() {
         super.update();
-        Tile current = maze.getTile(getTilePosition());
+        int current = tileIndex();
         double speed = getSpeed();
 
         if (ticksAlive % 5 == 0)
@@ -221,9 +271,10 @@ public class GhostEntity extends Entity {
             // If moving forward would cause the ghost to leave it's current tile, then
             // we need to change direction.
             speed = 0.5;
-            Tile next = maze.getTile(maze.toTileCoords(getPosition().add(direction.getDx() * speed, direction.getDy() * speed)));
-            if (!current.equals(next)) {
-                direction = direction.behind();
+            int nextX = (int) (position.x() + direction.getDx() * speed) / Maze.TILE_SIZE;
+            int nextY = (int) (position.y() + direction.getDy() * speed) / Maze.TILE_SIZE;
+            if (current != maze.getTileIndex(nextX, nextY)) {
+                setDirection(direction.behind());
             }
 
             // fixCenter cannot be used in the ghost pen, since the ghosts are off tiles
@@ -233,44 +284,43 @@ public class GhostEntity extends Entity {
 
         // While still in the ghost pen, the ghost should move towards the center,
         // then move straight up. TODO: find a way to handle arbitrary ghost pens
-        if (current.getState() == TileState.GHOST_PEN && state != GhostState.EATEN) {
+        if (maze.getTileState(current) == TileState.GHOST_PEN && state != GhostState.EATEN) {
             int centerX = maze.getPixelDimensions().x() / 2;
 
             // When centered on the x-axis, move up to get out
             double dx = position.x() - centerX;
             if (Math.abs(dx) < 0.01) {
-                direction = Direction.UP;
+                setDirection(Direction.UP);
                 move(direction, 0.5, false); //  TODO: use moveTowards so we don't overshoot
                 return;
             }
 
-            direction = dx > 0 ? Direction.LEFT : Direction.RIGHT;
+            setDirection(dx > 0 ? Direction.LEFT : Direction.RIGHT);
             double x = NumberUtil.moveTowards(position.x(), centerX, 0.5);
             double y = position.y();
-            setPosition(new Vector2d(x, y));
+            setPosition(x, y);
             return;
         }
 
         if (state == GhostState.EATEN) {
             // Look down for an opening to enter the ghost pen
-            Tile down = current.getNeighbor(Direction.DOWN);
-            if (down.getState() == TileState.GHOST_PEN) {
+            TileState down = maze.getTileState(maze.getNeighbor(current, Direction.DOWN));
+            if (down == TileState.GHOST_PEN) {
                 // move towards the center of the board, on the x-axis
-                Vector2d position = getPosition();
                 int centerX = maze.getPixelDimensions().x() / 2;
-                position.x = NumberUtil.moveTowards(position.x(), centerX, speed);
-                setPosition(position);
+                double x = NumberUtil.moveTowards(position.x(), centerX, speed);
+                setPosition(x, position.y());
 
                 // If we are centered, move down
-                if (position.x() == centerX) {
-                    direction = Direction.DOWN;
+                if (x == centerX) {
+                    setDirection(Direction.DOWN);
                     move(direction, speed, false);
                 }
                 return;
             }
 
             // If we hit a wall, revive
-            if (current.getState() == TileState.GHOST_PEN && down.getState() == TileState.WALL) {
+            if (maze.getTileState(current) == TileState.GHOST_PEN && down == TileState.WALL) {
                 setState(maze.isGhostChase() ? GhostState.CHASE : GhostState.SCATTER);
                 return;
             }
@@ -285,15 +335,15 @@ public class GhostEntity extends Entity {
 
         // Basic collision detection
         PacmanEntity pacman = maze.getPacman();
-        if (pacman.getTilePosition().equals(getTilePosition())) {
+        if (pacman.tileX() == tileX() && pacman.tileY() == tileY()) {
             maze.eatGhost(pacman, this);
         }
 
         // In ghost may only change direction when it enters an intersection.
         // Since ghosts may not reverse direction, we simply check when we enter
         // a new tile.
-        Tile last = maze.getTile(maze.toTileCoords(lastPosition));
-        if (!last.equals(current) || nextDirection == null) {
+        int last = maze.getTileIndex((int) lastPosition.x() / Maze.TILE_SIZE, (int) lastPosition.y() / Maze.TILE_SIZE);
+        if (last != current || nextDirection == null) {
             Behavior behavior = getBehavior();
             nextDirection = behavior.getDirection(this);
         }
@@ -301,15 +351,16 @@ public class GhostEntity extends Entity {
         // When we are locked into a new direction, we should move towards the center
         // of the tile, then move in that direction.
         if (nextDirection != direction) {
-            Vector2d center = new Vector2d(current.getCenterPixel());
-            if (!position.equals(center, 0.1)) {
-                double x = NumberUtil.moveTowards(position.x(), center.x(), speed);
-                double y = NumberUtil.moveTowards(position.y(), center.y(), speed);
-                setPosition(new Vector2d(x, y));
+            int centerX = maze.getCenterPixelX(current);
+            int centerY = maze.getCenterPixelY(current);
+            if (Math.abs(position.x() - centerX) > 0.1 || Math.abs(position.y() - centerY) > 0.1) {
+                double x = NumberUtil.moveTowards(position.x(), centerX, speed);
+                double y = NumberUtil.moveTowards(position.y(), centerY, speed);
+                setPosition(x, y);
                 return;
             }
 
-            direction = nextDirection;
+            setDirection(nextDirection);
         }
 
         // This should never occur
@@ -322,8 +373,23 @@ public class GhostEntity extends Entity {
     }
 
 
+    /**
+     * Returns the sprite sheet used to render this ghost. The sprite sheet is
+     * only created the first time it is needed, so simulation-only (headless)
+     * games never touch the graphics context.
+     *
+     * @return the sprite sheet used to render this ghost
+     */
+    private @NotNull GrayscaleSpriteSheet getSpriteSheet() {
+        if (spriteSheet == null)
+            spriteSheet = new GrayscaleSpriteSheet("sprites/ghost-sprite.png", 20);
+        return spriteSheet;
+    }
+
     @Override
     public void render(@NotNull SpriteBatch batch) {
+        GrayscaleSpriteSheet spriteSheet = getSpriteSheet();
+
         // The colors change based on the state of the ghost
         Color[] colors = switch (state) {
             case CHASE, SCATTER -> colorsAlive;
@@ -356,7 +422,8 @@ public class GhostEntity extends Entity {
 
     @Override
     public void dispose() {
-        spriteSheet.dispose();
+        if (spriteSheet != null)
+            spriteSheet.dispose();
     }
 
     public boolean isFrightened() {
@@ -366,7 +433,7 @@ public class GhostEntity extends Entity {
 
     public static class Config {
         public boolean isElroy = false;
-        public @NotNull GrayscaleSpriteSheet spriteSheet = new GrayscaleSpriteSheet(new Texture("sprites/ghost-sprite.png"), 20);
+        public @Nullable GrayscaleSpriteSheet spriteSheet = null;  // null means it is created on the first render
         public @NotNull Behavior chase = new AggressiveChaseBehavior();
         public @NotNull Vector2i scatterTile = new Vector2i();
         public @NotNull Vector2i spawnPixel = new Vector2i();
@@ -1,25 +1,26 @@
 package com.buaisociety.pacman.entity;
 
 import com.badlogic.gdx.graphics.Color;
-import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.buaisociety.pacman.entity.behavior.AggressiveChaseBehavior;
 import com.buaisociety.pacman.entity.behavior.Behavior;
 import com.buaisociety.pacman.maze.Maze;
-import com.buaisociety.pacman.maze.Tile;
 import com.buaisociety.pacman.maze.TileState;
 import com.buaisociety.pacman.sprite.GrayscaleSpriteSheet;
 import org.jetbrains.annotations.NotNull;
-import org.joml.Vector2d;
+import org.jetbrains.annotations.Nullable;
 import org.joml.Vector2i;
 
+import java.util.List;
+
 public class PacmanEntity extends Entity {
 
-    private final GrayscaleSpriteSheet spriteSheet;
+    private @Nullable GrayscaleSpriteSheet spriteSheet;
     private int animationFrame;
 
     private final @NotNull Vector2i spawnPixel;
     private final @NotNull Behavior behavior;
+    private final boolean decisionPointsOnly;
     private int freezeTicks;
     private boolean isAlive = true;
 
@@ -30,16 +31,24 @@ public class PacmanEntity extends Entity {
     private int currentLevel;
     private boolean advancedToNextLevel = false;
 
+    // Where the behavior was last asked, see Config#decisionPointsOnly
+    private int lastTile = NO_TILE;
+    private int lastEvents;
+
+    private static final int NO_TILE = Integer.MIN_VALUE;
+
     public PacmanEntity(@NotNull Maze maze, @NotNull Config config) {
         super(maze, EntityType.PACMAN);
 
         this.behavior = config.behavior;
         this.spawnPixel = config.spawnPixel;
+        this.decisionPointsOnly = config.decisionPointsOnly;
         reset();
 
         // This sprite sheet is 3x4 tiled sprite sheet, each tile is 20x20 pixels
         this.spriteSheet = config.spriteSheet;
-        this.spriteSheet.setColors(Color.CLEAR, Color.YELLOW);
+        if (spriteSheet != null)
+            spriteSheet.setColors(Color.CLEAR, Color.YELLOW);
     }
 
     @Override
@@ -48,15 +57,67 @@ public class PacmanEntity extends Entity {
         freezeTicks = 0;
         isAlive = true;
 
-        setPosition(new Vector2d(spawnPixel));
-        this.direction = Direction.UP;
+        setPosition(spawnPixel.x, spawnPixel.y);
+        setDirection(Direction.UP);
 
         isAlive = true;
         advancedToNextLevel = false;
+        lastTile = NO_TILE;
 
         currentLevel = maze.getLevelManager().getLevel();
     }
 
+    @Override
+    public @NotNull PacmanEntity createReplica(@NotNull Maze maze) {
+        return createReplica(maze, behavior);
+    }
+
+    /**
+     * Creates a new pacman like this one in the given maze, controlled by the
+     * given behavior instead. See {@link #createReplica(Maze)}.
+     *
+     * @param maze     the maze of the copy
+     * @param behavior the behavior of the copy
+     * @return the new pacman, not yet added to the maze
+     */
+    public @NotNull PacmanEntity createReplica(@NotNull Maze maze, @NotNull Behavior behavior) {
+        Config config = new Config();
+        config.behavior = behavior;
+        config.spawnPixel = new Vector2i(spawnPixel);
+        config.decisionPointsOnly = decisionPointsOnly;
+        return new PacmanEntity(maze, config);
+    }
+
+    @Override
+    protected void saveData(int[] data) {
+        data[0] = animationFrame;
+        data[1] = freezeTicks;
+        data[2] = isAlive ? 1 : 0;
+        data[3] = powerPelletsEaten;
+        data[4] = fruitsEaten;
+        data[5] = pelletsEaten;
+        data[6] = ghostsEaten;
+        data[7] = currentLevel;
+        data[8] = advancedToNextLevel ? 1 : 0;
+        data[9] = lastTile;
+        data[10] = lastEvents;
+    }
+
+    @Override
+    protected void restoreData(int[] data) {
+        animationFrame = data[0];
+        freezeTicks = data[1];
+        isAlive = data[2] != 0;
+        powerPelletsEaten = data[3];
+        fruitsEaten = data[4];
+        pelletsEaten = data[5];
+        ghostsEaten = data[6];
+        currentLevel = data[7];
+        advancedToNextLevel = data[8] != 0;
+        lastTile = data[9];
+        lastEvents = data[10];
+    }
+
     @Override
     public double getSpeed() {
         // These constants are taken straight out of the Pacman game
@@ -127,14 +188,15 @@ public class PacmanEntity extends Entity {
             animationFrame++;
 
         Behavior behavior = getBehavior();
-        direction = behavior.getDirection(this);
+        behavior.update(this);
+        if (!decisionPointsOnly || isDecisionPoint())
+            setDirection(behavior.getDirection(this));
         if (canMove(direction)) {
             move(direction, getSpeed(), true);
         }
 
         // Eat pellets
-        Tile tile = maze.getTile(maze.toTileCoords(position));
-        TileState pellet = maze.eatPellet(this, tile);
+        TileState pellet = maze.eatPellet(this, tileIndex());
         if (pellet == TileState.PELLET) {
             freezeTicks += 1;
             incrementPelletsEaten();
@@ -144,9 +206,69 @@ public class PacmanEntity extends Entity {
         }
     }
 
+    /**
+     * Returns true if the behavior should choose a direction this tick, when
+     * {@link Config#decisionPointsOnly} is set. In a corridor, the only
+     * choices are to keep going or to turn around, so the last direction is
+     * kept until pacman enters a tile with another choice (an intersection, a
+     * corner or a dead end), is stopped by a wall, or a ghost changes state
+     * or a fruit appears or disappears.
+     *
+     * @return true if the behavior should be asked
+     */
+    private boolean isDecisionPoint() {
+        int tile = tileIndex();
+        int events = getDecisionEvents();
+        boolean decide = lastTile == NO_TILE || events != lastEvents || !canMove(direction)
+            || tile != lastTile && !isCorridor(tile);
+        lastTile = tile;
+        lastEvents = events;
+        return decide;
+    }
+
+    /**
+     * Returns true if the tile only connects 2 opposite neighbors.
+     */
+    private boolean isCorridor(int tile) {
+        boolean up = maze.isPassable(maze.getNeighbor(tile, Direction.UP));
+        boolean down = maze.isPassable(maze.getNeighbor(tile, Direction.DOWN));
+        boolean left = maze.isPassable(maze.getNeighbor(tile, Direction.LEFT));
+        boolean right = maze.isPassable(maze.getNeighbor(tile, Direction.RIGHT));
+        return up && down && !left && !right || left && right && !up && !down;
+    }
+
+    /**
+     * Packs the state of every ghost (2 bits each) and whether there is a
+     * fruit, so a change to any of them is a decision point.
+     */
+    private int getDecisionEvents() {
+        int events = maze.getFruit() != null ? 1 : 0;
+        List<GhostEntity> ghosts = maze.getGhosts();
+        for (int i = 0; i < ghosts.size(); i++) {
+            events = events << 2 | ghosts.get(i).getState().ordinal();
+        }
+        return events;
+    }
+
+    /**
+     * Returns the sprite sheet used to render pacman. The sprite sheet is only
+     * created the first time it is needed, so simulation-only (headless) games
+     * never touch the graphics context.
+     *
+     * @return the sprite sheet used to render pacman
+     */
+    private @NotNull GrayscaleSpriteSheet getSpriteSheet() {
+        if (spriteSheet == null) {
+            spriteSheet = new GrayscaleSpriteSheet("sprites/pacman-sprite.png", 20);
+            spriteSheet.setColors(Color.CLEAR, Color.YELLOW);
+        }
+        return spriteSheet;
+    }
+
     @Override
     public void render(@NotNull SpriteBatch batch) {
         behavior.render(batch);
+        GrayscaleSpriteSheet spriteSheet = getSpriteSheet();
 
         // Render the current tile of the sprite sheet
         switch (animationFrame % 4) {
@@ -161,14 +283,16 @@ public class PacmanEntity extends Entity {
 
     @Override
     public void dispose() {
-        spriteSheet.dispose();
+        if (spriteSheet != null)
+            spriteSheet.dispose();
     }
 
 
     public static class Config {
         public @NotNull Behavior behavior = new AggressiveChaseBehavior();
         public @NotNull Vector2i spawnPixel = new Vector2i();
-        public @NotNull GrayscaleSpriteSheet spriteSheet = new GrayscaleSpriteSheet(new Texture("sprites/pacman-sprite.png"), 20);
+        public @Nullable GrayscaleSpriteSheet spriteSheet = null;  // null means it is created on the first render
+        public boolean decisionPointsOnly = false;  // only ask the behavior at intersections, corners, walls and ghost or fruit changes
     }
 
     public void incrementPowerPelletsEaten() {
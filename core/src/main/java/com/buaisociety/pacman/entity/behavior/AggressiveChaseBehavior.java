@@ -12,9 +12,11 @@ import org.joml.Vector2i;
  */
 public class AggressiveChaseBehavior implements TargetableBehavior {
 
+    private final @NotNull Vector2i target = new Vector2i();
+
     @Override
     public @NotNull Vector2i getTarget(@NotNull Entity entity) {
         PacmanEntity pacman = entity.getMaze().getPacman();
-        return pacman.getTilePosition();
+        return target.set(pacman.tileX(), pacman.tileY());
     }
 }
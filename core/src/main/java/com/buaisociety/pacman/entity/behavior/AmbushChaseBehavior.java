@@ -1,5 +1,6 @@
 package com.buaisociety.pacman.entity.behavior;
 
+import com.buaisociety.pacman.entity.Direction;
 import com.buaisociety.pacman.entity.Entity;
 import com.buaisociety.pacman.entity.PacmanEntity;
 import org.jetbrains.annotations.NotNull;
@@ -12,12 +13,13 @@ import org.joml.Vector2i;
  */
 public class AmbushChaseBehavior implements TargetableBehavior {
 
+    private final @NotNull Vector2i target = new Vector2i();
+
     @NotNull
     @Override
     public Vector2i getTarget(@NotNull Entity entity) {
         PacmanEntity pacman = entity.getMaze().getPacman();
-        Vector2i origin = pacman.getTilePosition();
-        origin.add(pacman.getDirection().asVector().mul(4));
-        return origin;
+        Direction direction = pacman.getDirection();
+        return target.set(pacman.tileX() + direction.getDx() * 4, pacman.tileY() + direction.getDy() * 4);
     }
 }
@@ -22,6 +22,18 @@ public interface Behavior {
      */
     @NotNull Direction getDirection(@NotNull Entity entity);
 
+    /**
+     * Called every tick the entity is able to move, right before
+     * {@link #getDirection(Entity)} would be. Pacman calls this even on the
+     * ticks it does not ask for a direction (see
+     * {@link com.buaisociety.pacman.entity.PacmanEntity.Config#decisionPointsOnly}),
+     * so per-tick bookkeeping like fitness belongs here.
+     *
+     * @param entity the entity being updated
+     */
+    default void update(@NotNull Entity entity) {
+    }
+
     /**
      * Renders the behavior, if applicable.
      *
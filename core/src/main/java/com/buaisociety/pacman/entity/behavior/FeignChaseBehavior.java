@@ -7,14 +7,18 @@ import org.jetbrains.annotations.NotNull;
 import org.joml.Vector2i;
 
 public class FeignChaseBehavior implements TargetableBehavior {
+
+    private final @NotNull Vector2i target = new Vector2i();
+
     @NotNull
     @Override
     public Vector2i getTarget(@NotNull Entity entity) {
         PacmanEntity pacman = entity.getMaze().getPacman();
-        Vector2i target = pacman.getTilePosition();
+        int dx = pacman.tileX() - entity.tileX();
+        int dy = pacman.tileY() - entity.tileY();
 
-        if (target.distanceSquared(entity.getTilePosition()) > 64) {
-            return target;
+        if (dx * dx + dy * dy > 64) {
+            return target.set(pacman.tileX(), pacman.tileY());
         } else {
             return ((GhostEntity) entity).getScatterTile();
         }
@@ -0,0 +1,406 @@
+package com.buaisociety.pacman.entity.behavior;
+
+import com.buaisociety.pacman.entity.Direction;
+import com.buaisociety.pacman.entity.Entity;
+import com.buaisociety.pacman.entity.GhostEntity;
+import com.buaisociety.pacman.entity.GhostState;
+import com.buaisociety.pacman.entity.PacmanEntity;
+import com.buaisociety.pacman.maze.DistanceTable;
+import com.buaisociety.pacman.maze.GameSnapshot;
+import com.buaisociety.pacman.maze.Maze;
+import com.buaisociety.pacman.maze.TerminalReason;
+import com.buaisociety.pacman.maze.TileDistanceField;
+import com.buaisociety.pacman.util.GameRandom;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * A pacman behavior that plans with Monte Carlo tree search, as a strong
+ * baseline (and teacher) for the trained behaviors.
+ *
+ * <p>Every time pacman enters a new tile, the behavior saves a
+ * {@link GameSnapshot} of the maze and searches for {@link Config#budgetNanos}.
+ * Each worker owns a {@link Maze#createReplica(Behavior) replica} of the maze,
+ * restores the snapshot into it, and plays the game forward with the real
+ * ghost behaviors. An action is a direction that pacman follows until he
+ * reaches the next tile, so the tree only branches at tiles. Workers search
+ * independent trees (root parallelization), each a transposition table keyed
+ * on {@link Maze#getStateHash()}, and their root visit counts are summed to
+ * pick the direction.
+ *
+ * <p>Ghost randomness (frightened ghosts) is unknown to pacman, so each
+ * simulation reseeds its replica's random number generator instead of
+ * replaying the real game's numbers.
+ */
+public class MctsPacmanBehavior implements Behavior {
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private final @NotNull Config config;
+    private final @NotNull GameSnapshot snapshot = new GameSnapshot();
+    private final @NotNull List<Worker> workers = new ArrayList<>();
+    private final long[] rootVisits = new long[DIRECTIONS.length];
+    private final double[] rootValues = new double[DIRECTIONS.length];
+
+    private @Nullable Maze maze;  // the maze the workers replicate, a new level has a new maze
+    private int plannedTile = -1;
+    private @NotNull Direction plannedDirection = Direction.LEFT;
+
+    public MctsPacmanBehavior() {
+        this(new Config());
+    }
+
+    public MctsPacmanBehavior(@NotNull Config config) {
+        this.config = config;
+    }
+
+    /**
+     * Returns the desired direction that the entity should move towards.
+     * Only searches when pacman enters a new tile; in between, the last
+     * planned direction is returned.
+     *
+     * @param entity the entity to get the direction for
+     * @return the desired direction for the entity
+     */
+    @NotNull
+    @Override
+    public Direction getDirection(@NotNull Entity entity) {
+        Maze maze = entity.getMaze();
+        if (this.maze != maze) {
+            this.maze = maze;
+            workers.clear();
+            plannedTile = -1;
+        }
+
+        int tile = entity.tileIndex();
+        if (tile == plannedTile)
+            return plannedDirection;
+
+        plannedTile = tile;
+        plannedDirection = plan(maze, entity.getDirection());
+        return plannedDirection;
+    }
+
+    private @NotNull Direction plan(@NotNull Maze maze, @NotNull Direction current) {
+        if (workers.isEmpty()) {
+            // Replicas must be created on the thread that updates the maze
+            GameRandom seeds = new GameRandom(config.seed);
+            int count = Math.max(1, config.parallelism);
+            for (int i = 0; i < count; i++) {
+                ScriptedBehavior script = new ScriptedBehavior();
+                workers.add(new Worker(maze.createReplica(script), script, seeds.split()));
+            }
+        }
+
+        // Every simulation reads the pellet distances, so keep them in the snapshots
+        maze.getPelletDistances().build();
+        maze.saveSnapshot(snapshot);
+        long deadline = System.nanoTime() + config.budgetNanos;
+        for (Worker worker : workers) {
+            worker.deadline = deadline;
+        }
+        if (workers.size() == 1) {
+            workers.get(0).call();
+        } else {
+            ForkJoinPool pool = config.pool != null ? config.pool : ForkJoinPool.commonPool();
+            pool.invokeAll(workers);
+        }
+
+        // Sum the root statistics of every worker
+        for (int i = 0; i < DIRECTIONS.length; i++) {
+            rootVisits[i] = 0;
+            rootValues[i] = 0;
+        }
+        for (Worker worker : workers) {
+            Node root = worker.root;
+            if (root == null)
+                continue;
+            for (int i = 0; i < root.actions.length; i++) {
+                int action = root.actions[i].ordinal();
+                rootVisits[action] += root.visits[i];
+                rootValues[action] += root.values[i];
+            }
+        }
+
+        Direction best = current;
+        long bestVisits = 0;
+        double bestValue = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < DIRECTIONS.length; i++) {
+            if (rootVisits[i] == 0)
+                continue;
+            double value = rootValues[i] / rootVisits[i];
+            if (rootVisits[i] > bestVisits || rootVisits[i] == bestVisits && value > bestValue) {
+                best = DIRECTIONS[i];
+                bestVisits = rootVisits[i];
+                bestValue = value;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Returns the directions pacman can move in from the given tile.
+     */
+    private static @NotNull Direction[] getActions(@NotNull Maze maze, int tile) {
+        int count = 0;
+        for (Direction direction : DIRECTIONS) {
+            if (maze.isPassable(maze.getNeighbor(tile, direction)))
+                count++;
+        }
+        Direction[] actions = new Direction[count];
+        count = 0;
+        for (Direction direction : DIRECTIONS) {
+            if (maze.isPassable(maze.getNeighbor(tile, direction)))
+                actions[count++] = direction;
+        }
+        return actions;
+    }
+
+    /**
+     * The statistics of 1 state: how often each action was tried from it, and
+     * the total reward collected after it. Statistics live on the edges, so a
+     * state reached through different paths shares them.
+     */
+    private static final class Node {
+        final @NotNull Direction[] actions;
+        final int[] visits;
+        final double[] values;
+        int totalVisits;
+
+        Node(@NotNull Direction[] actions) {
+            this.actions = actions;
+            this.visits = new int[actions.length];
+            this.values = new double[actions.length];
+        }
+    }
+
+    /**
+     * Moves the replica's pacman in the direction chosen by the search.
+     */
+    private static final class ScriptedBehavior implements Behavior {
+        private @NotNull Direction direction = Direction.LEFT;
+
+        @NotNull
+        @Override
+        public Direction getDirection(@NotNull Entity entity) {
+            return direction;
+        }
+    }
+
+    /**
+     * Searches 1 tree on its own replica until the deadline. Only touched by
+     * 1 thread at a time.
+     */
+    private final class Worker implements Callable<Void> {
+        private final @NotNull Maze replica;
+        private final @NotNull ScriptedBehavior script;
+        private final @NotNull GameRandom random;
+        private final @NotNull Map<Long, Node> table = new HashMap<>();
+
+        // The path of the current simulation
+        private final Node[] pathNodes;
+        private final int[] pathActions;
+        private final int[] pathScores;
+
+        private long deadline;
+        private @Nullable Node root;
+
+        Worker(@NotNull Maze replica, @NotNull ScriptedBehavior script, @NotNull GameRandom random) {
+            this.replica = replica;
+            this.script = script;
+            this.random = random;
+            this.pathNodes = new Node[config.depth];
+            this.pathActions = new int[config.depth];
+            this.pathScores = new int[config.depth];
+        }
+
+        @Override
+        public Void call() {
+            if (table.size() > config.maxNodes)
+                table.clear();
+
+            replica.restoreSnapshot(snapshot);
+            root = getNode();
+            if (root.actions.length == 0)
+                return null;
+
+            do {
+                simulate();
+            } while (System.nanoTime() < deadline);
+            return null;
+        }
+
+        private @NotNull Node getNode() {
+            return table.computeIfAbsent(replica.getStateHash(), hash -> new Node(getActions(replica, replica.getPacman().tileIndex())));
+        }
+
+        private void simulate() {
+            replica.restoreSnapshot(snapshot);
+            replica.getLevelManager().getRandom().setState(random.nextLong());
+            int startScore = replica.getLevelManager().getScore();
+
+            // Selection and expansion: follow the tree until we reach a new state
+            Node node = root;
+            int length = 0;
+            boolean expanded = false;
+            while (node != null && length < config.depth) {
+                int action = select(node);
+                pathNodes[length] = node;
+                pathActions[length] = action;
+                pathScores[length] = replica.getLevelManager().getScore();
+                length++;
+                if (!step(node.actions[action]))
+                    break;
+
+                if (expanded)
+                    break;
+                node = table.get(replica.getStateHash());
+                if (node == null) {
+                    node = getNode();
+                    expanded = true;
+                }
+            }
+
+            // Rollout: wander without turning around until the depth is used up
+            Direction direction = pathNodes[length - 1].actions[pathActions[length - 1]];
+            for (int depth = length; depth < config.depth && replica.getTerminalReason() == null; depth++) {
+                direction = randomAction(direction);
+                if (!step(direction))
+                    break;
+            }
+
+            // Backpropagation, each edge gets the reward collected after it
+            double end = evaluate(startScore);
+            for (int i = 0; i < length; i++) {
+                Node pathNode = pathNodes[i];
+                int action = pathActions[i];
+                pathNode.visits[action]++;
+                pathNode.values[action] += end - (pathScores[i] - startScore) / config.rewardScale;
+                pathNode.totalVisits++;
+            }
+        }
+
+        /**
+         * Picks the action to try from the given node with UCT, trying every
+         * action once first.
+         */
+        private int select(@NotNull Node node) {
+            int best = 0;
+            double bestScore = Double.NEGATIVE_INFINITY;
+            double logVisits = Math.log(Math.max(1, node.totalVisits));
+            for (int i = 0; i < node.actions.length; i++) {
+                if (node.visits[i] == 0)
+                    return i;
+                double mean = node.values[i] / node.visits[i];
+                double score = mean + config.exploration * Math.sqrt(logVisits / node.visits[i]);
+                if (score > bestScore) {
+                    best = i;
+                    bestScore = score;
+                }
+            }
+            return best;
+        }
+
+        /**
+         * Returns a random direction pacman can take from his tile, avoiding
+         * turning around unless it is a dead end.
+         */
+        private @NotNull Direction randomAction(@NotNull Direction previous) {
+            int tile = replica.getPacman().tileIndex();
+            Direction behind = previous.behind();
+            int offset = random.nextInt(DIRECTIONS.length);
+            for (int i = 0; i < DIRECTIONS.length; i++) {
+                Direction direction = DIRECTIONS[(offset + i) % DIRECTIONS.length];
+                if (direction != behind && replica.isPassable(replica.getNeighbor(tile, direction)))
+                    return direction;
+            }
+            return behind;
+        }
+
+        /**
+         * Moves pacman in the given direction until he reaches the next tile.
+         *
+         * @return false if the game ended
+         */
+        private boolean step(@NotNull Direction direction) {
+            PacmanEntity pacman = replica.getPacman();
+            int tile = pacman.tileIndex();
+            script.direction = direction;
+            for (int tick = 0; tick < config.maxStepTicks; tick++) {
+                replica.update();
+                if (replica.getTerminalReason() != null)
+                    return false;
+                if (pacman.tileIndex() != tile)
+                    break;
+            }
+            return true;
+        }
+
+        /**
+         * Returns the reward of the replica's state: the points scored since
+         * the snapshot, minus the distance to the closest pellet, minus
+         * (when {@link Config#ghostDistanceWeight} is set) a penalty for every
+         * chasing ghost closer than {@link Config#ghostDangerDistance} by
+         * walking distance, minus a penalty if pacman died.
+         */
+        private double evaluate(int startScore) {
+            double reward = replica.getLevelManager().getScore() - startScore;
+            TerminalReason reason = replica.getTerminalReason();
+            if (reason == TerminalReason.LOSE) {
+                reward -= config.deathPenalty;
+            } else if (reason == null) {
+                PacmanEntity pacman = replica.getPacman();
+                int distance = replica.getPelletDistances().getDistance(pacman.tileX(), pacman.tileY());
+                if (distance != TileDistanceField.UNREACHABLE)
+                    reward -= config.pelletDistanceWeight * distance;
+
+                if (config.ghostDistanceWeight != 0)
+                    reward -= config.ghostDistanceWeight * ghostDanger(pacman.tileIndex());
+            }
+            return reward / config.rewardScale;
+        }
+
+        /**
+         * Returns how many tiles each chasing or scattering ghost is inside
+         * {@link Config#ghostDangerDistance} of the given tile, summed.
+         */
+        private int ghostDanger(int tile) {
+            DistanceTable distances = replica.getDistanceTable();
+            List<GhostEntity> ghosts = replica.getGhosts();
+            int danger = 0;
+            for (int i = 0; i < ghosts.size(); i++) {
+                GhostEntity ghost = ghosts.get(i);
+                GhostState state = ghost.getState();
+                if (state != GhostState.CHASE && state != GhostState.SCATTER)
+                    continue;
+                int distance = distances.distance(tile, ghost.tileIndex());
+                if (distance != DistanceTable.UNREACHABLE && distance < config.ghostDangerDistance)
+                    danger += config.ghostDangerDistance - distance;
+            }
+            return danger;
+        }
+    }
+
+    public static class Config {
+        public long budgetNanos = 10_000_000L;  // time spent searching each time pacman enters a new tile
+        public int depth = 16;  // actions (tiles) per simulation, tree and rollout together
+        public int maxStepTicks = 60;  // ticks to wait for pacman to reach the next tile before giving up on an action
+        public double exploration = 1.0;  // UCT exploration constant, rewards are divided by rewardScale first
+        public double rewardScale = 100;
+        public double deathPenalty = 1000;  // points lost when pacman dies
+        public double pelletDistanceWeight = 2;  // points lost per tile to the closest pellet, at the end of a simulation
+        public int ghostDangerDistance = 4;  // chasing ghosts closer than this many tiles (walking) cost points at the end of a simulation
+        public double ghostDistanceWeight = 0;  // points lost per tile a chasing ghost is inside ghostDangerDistance, 0 (the default) turns it off
+        public int parallelism = Runtime.getRuntime().availableProcessors();  // workers, each with its own replica and tree
+        public int maxNodes = 1 << 16;  // a worker forgets its tree when it grows past this many states
+        public @Nullable ForkJoinPool pool = null;  // null means the common pool
+        public long seed = 0;  // seeds the ghost randomness of the simulations
+    }
+}
@@ -10,16 +10,22 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.joml.Vector2i;
 
+import java.util.List;
+
 /**
  * This behavior coordinates with the
  */
 public class PatrolChaseBehavior implements TargetableBehavior {
 
     private @Nullable GhostEntity blinky;
+    private final @NotNull Vector2i target = new Vector2i();
 
     public @NotNull GhostEntity findBlinky(@NotNull Maze maze) {
-        for (Entity entity : maze.getEntities()) {
-            if (entity instanceof GhostEntity ghost && ghost.getBehavior(GhostState.CHASE) instanceof AggressiveChaseBehavior) {
+        // Indexed, so that even the first lookup of a level never allocates
+        List<GhostEntity> ghosts = maze.getGhosts();
+        for (int i = 0; i < ghosts.size(); i++) {
+            GhostEntity ghost = ghosts.get(i);
+            if (ghost.getBehavior(GhostState.CHASE) instanceof AggressiveChaseBehavior) {
                 return ghost;
             }
         }
@@ -37,10 +43,10 @@ public class PatrolChaseBehavior implements TargetableBehavior {
 
         PacmanEntity pacman = maze.getPacman();
         Direction dir = pacman.getDirection();
-        Vector2i target = pacman.getTilePosition().add(dir.getDx() * 2, dir.getDy() * 2);
+        int aheadX = pacman.tileX() + dir.getDx() * 2;
+        int aheadY = pacman.tileY() + dir.getDy() * 2;
 
-        Vector2i between = target.sub(blinky.getTilePosition());
-        between.mul(2).add(blinky.getTilePosition());
-        return between;
+        // Double the vector from blinky to the tile in front of pacman
+        return target.set(2 * aheadX - blinky.tileX(), 2 * aheadY - blinky.tileY());
     }
 }
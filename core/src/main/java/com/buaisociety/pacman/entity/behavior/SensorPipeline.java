@@ -0,0 +1,322 @@
+package com.buaisociety.pacman.entity.behavior;
+
+import com.buaisociety.pacman.entity.Direction;
+import com.buaisociety.pacman.entity.EntityType;
+import com.buaisociety.pacman.entity.PacmanEntity;
+import com.buaisociety.pacman.maze.GhostOccupancy;
+import com.buaisociety.pacman.maze.GhostPredictor;
+import com.buaisociety.pacman.maze.Maze;
+import com.buaisociety.pacman.maze.Tile;
+import com.buaisociety.pacman.maze.TileState;
+import com.buaisociety.pacman.util.Searcher;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.joml.Vector2ic;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Computes the inputs of a pacman's neural network from a declared layout,
+ * so every behavior that uses the same layout sees exactly the same inputs.
+ *
+ * <p>A layout is a list of sensor groups, declared with a {@link Builder}:
+ * <ul>
+ *     <li>{@link Builder#wallProbes()}: 4 inputs, 1 if pacman can move forward, left, right and behind.</li>
+ *     <li>{@link Builder#targets(Predicate, Predicate)}: 4 inputs, 1 for each of forward, left, right and behind that starts a shortest path to the closest target.</li>
+ *     <li>{@link Builder#ghostRays(Direction...)}: 2 inputs per direction, 1 if no dangerous ghost is in sight, and 1 if the first ghost in sight is frightened.</li>
+ *     <li>{@link Builder#ghostArrivals(Direction...)}: 2 inputs per direction, how soon a dangerous and a frightened ghost are predicted to reach the next tile.</li>
+ * </ul>
+ *
+ * <p>When built, every target group is merged into 1 breadth first search
+ * (see {@link Searcher#getDirectionsToClosestTargets}), skipping the classes
+ * that have no target in the maze (a search for a missing fruit would walk
+ * the whole maze for nothing). Ghost rays share the maze's
+ * {@link Maze#getGhostOccupancy() occupancy bitmaps}, and ghost arrivals share
+ * the maze's {@link Maze#getGhostPredictor() predictor}. The inputs are written
+ * into 1 buffer that is reused every tick. A pipeline is not thread safe;
+ * use 1 per behavior.
+ *
+ * <p>Pacman stays on the same tile for several ticks, so the target inputs
+ * are only searched again when pacman's tile or direction changes, or when
+ * the maze's {@link Maze#getModCount() modification counter} does. Target
+ * predicates must therefore only depend on the tiles and on entities that do
+ * not move (like the fruit). Wall probes depend on pacman's exact position,
+ * and ghosts move every tick, so both are computed every tick. Predicting
+ * the ghosts simulates them for {@link GhostPredictor#getHorizon()} ticks
+ * every tick, so {@link #createPacmanInputs()} leaves ghost arrivals out.
+ */
+public final class SensorPipeline {
+
+    private static final Predicate<Tile> IS_PELLET = tile -> tile.getState() == TileState.PELLET || tile.getState() == TileState.POWER_PELLET;
+    private static final Predicate<Tile> IS_POWER_PELLET = tile -> tile.getState() == TileState.POWER_PELLET;
+    private static final Predicate<Tile> IS_FRUIT = tile -> {
+        Vector2ic position = tile.getPosition();
+        return tile.getMaze().hasEntity(position.x(), position.y(), EntityType.FRUIT);
+    };
+    private static final Predicate<Maze> HAS_FRUIT = maze -> maze.countEntities(EntityType.FRUIT) > 0;
+    private static final int MAX_TARGETS = 8;  // the searched classes are cached for every combination of present classes
+
+    private final int[] wallProbeOffsets;
+    private final @NotNull List<Predicate<Tile>> targets;
+    private final @NotNull List<Predicate<Maze>> targetPresence;  // null entries are always searched
+    private final int[] targetOffsets;
+    private final @NotNull Direction[][] ghostRays;
+    private final int[] ghostRayOffsets;
+    private final @NotNull Direction[][] ghostArrivals;
+    private final int[] ghostArrivalOffsets;
+    private final float[] inputs;
+
+    // The target classes to search for each combination of present classes, created when first needed
+    private final List<Predicate<Tile>>[] presentTargets;
+    private final int[][] presentTargetIndices;
+    private final boolean[][] directionsToTargets;
+
+    private @Nullable Maze maze;
+    private @Nullable Searcher searcher;
+
+    // The target inputs only change when pacman's tile or direction, or the maze's tiles or entities change
+    private int targetsTileX;
+    private int targetsTileY;
+    private @Nullable Direction targetsDirection;
+    private long targetsModCount;
+
+    @SuppressWarnings("unchecked")
+    private SensorPipeline(@NotNull Builder builder) {
+        this.wallProbeOffsets = builder.wallProbeOffsets.stream().mapToInt(Integer::intValue).toArray();
+        this.targets = List.copyOf(builder.targets);
+        this.targetPresence = new ArrayList<>(builder.targetPresence);
+        this.targetOffsets = builder.targetOffsets.stream().mapToInt(Integer::intValue).toArray();
+        this.ghostRays = builder.ghostRays.toArray(new Direction[0][]);
+        this.ghostRayOffsets = builder.ghostRayOffsets.stream().mapToInt(Integer::intValue).toArray();
+        this.ghostArrivals = builder.ghostArrivals.toArray(new Direction[0][]);
+        this.ghostArrivalOffsets = builder.ghostArrivalOffsets.stream().mapToInt(Integer::intValue).toArray();
+        this.inputs = new float[builder.size];
+
+        this.presentTargets = new List[1 << targets.size()];
+        this.presentTargetIndices = new int[1 << targets.size()][];
+        this.directionsToTargets = new boolean[targets.size()][4];
+    }
+
+    /**
+     * Returns a new pipeline for the inputs shared by the training and
+     * tournament behaviors: wall probes, the directions to the closest
+     * pellet, power pellet and fruit, and ghost rays looking up, left, right
+     * and down (24 inputs).
+     *
+     * @return a new pipeline
+     */
+    public static @NotNull SensorPipeline createPacmanInputs() {
+        return new Builder()
+            .wallProbes()
+            .targets(IS_PELLET, null)
+            .targets(IS_POWER_PELLET, null)
+            .targets(IS_FRUIT, HAS_FRUIT)
+            .ghostRays(Direction.UP, Direction.LEFT, Direction.RIGHT, Direction.DOWN)
+            .build();
+    }
+
+    /**
+     * Returns the number of inputs this pipeline writes.
+     *
+     * @return the number of inputs
+     */
+    public int size() {
+        return inputs.length;
+    }
+
+    /**
+     * Computes the inputs for the given pacman.
+     *
+     * @param pacman the pacman to sense for
+     * @return the inputs, in a buffer that is overwritten by the next call
+     */
+    public float[] evaluate(@NotNull PacmanEntity pacman) {
+        Maze maze = pacman.getMaze();
+        if (searcher == null || this.maze != maze) {
+            this.maze = maze;
+            this.searcher = new Searcher(maze);
+            this.targetsDirection = null;
+        }
+
+        Direction forward = pacman.getDirection();
+        for (int offset : wallProbeOffsets) {
+            inputs[offset] = pacman.canMove(forward) ? 1f : 0f;
+            inputs[offset + 1] = pacman.canMove(forward.left()) ? 1f : 0f;
+            inputs[offset + 2] = pacman.canMove(forward.right()) ? 1f : 0f;
+            inputs[offset + 3] = pacman.canMove(forward.behind()) ? 1f : 0f;
+        }
+
+        if (!targets.isEmpty() && (forward != targetsDirection || pacman.tileX() != targetsTileX
+            || pacman.tileY() != targetsTileY || maze.getModCount() != targetsModCount)) {
+            evaluateTargets(maze, pacman);
+            targetsTileX = pacman.tileX();
+            targetsTileY = pacman.tileY();
+            targetsDirection = forward;
+            targetsModCount = maze.getModCount();
+        }
+
+        if (ghostRays.length != 0) {
+            GhostOccupancy occupancy = maze.getGhostOccupancy();
+            int tile = pacman.tileIndex();
+            for (int i = 0; i < ghostRays.length; i++) {
+                int index = ghostRayOffsets[i];
+                for (Direction direction : ghostRays[i]) {
+                    int ghostAhead = occupancy.castRay(tile, direction);
+                    inputs[index++] = ghostAhead != GhostOccupancy.DANGER ? 1f : 0f;
+                    inputs[index++] = ghostAhead == GhostOccupancy.FRIGHTENED ? 1f : 0f;
+                }
+            }
+        }
+
+        if (ghostArrivals.length != 0) {
+            GhostPredictor predictor = maze.getGhostPredictor();
+            float horizon = predictor.getHorizon() + 1;
+            int tile = pacman.tileIndex();
+            for (int i = 0; i < ghostArrivals.length; i++) {
+                int index = ghostArrivalOffsets[i];
+                for (Direction direction : ghostArrivals[i]) {
+                    int next = maze.getNeighbor(tile, direction);
+                    int danger = predictor.getDangerArrival(next);
+                    int frightened = predictor.getFrightenedArrival(next);
+                    inputs[index++] = danger == GhostPredictor.NEVER ? 0f : 1f - danger / horizon;
+                    inputs[index++] = frightened == GhostPredictor.NEVER ? 0f : 1f - frightened / horizon;
+                }
+            }
+        }
+        return inputs;
+    }
+
+    private void evaluateTargets(@NotNull Maze maze, @NotNull PacmanEntity pacman) {
+        int present = 0;
+        for (int i = 0; i < targets.size(); i++) {
+            Predicate<Maze> presence = targetPresence.get(i);
+            if (presence == null || presence.test(maze))
+                present |= 1 << i;
+        }
+
+        if (presentTargets[present] == null) {
+            List<Predicate<Tile>> searched = new ArrayList<>();
+            int[] indices = new int[Integer.bitCount(present)];
+            for (int i = 0; i < targets.size(); i++) {
+                if ((present & 1 << i) != 0) {
+                    indices[searched.size()] = i;
+                    searched.add(targets.get(i));
+                }
+            }
+            presentTargets[present] = List.copyOf(searched);
+            presentTargetIndices[present] = indices;
+        }
+
+        // Classes without a target in the maze have no directions
+        for (int i = 0; i < targets.size(); i++) {
+            if ((present & 1 << i) == 0) {
+                int offset = targetOffsets[i];
+                for (int j = 0; j < 4; j++) {
+                    inputs[offset + j] = 0f;
+                }
+            }
+        }
+        if (present == 0)
+            return;
+
+        searcher.getDirectionsToClosestTargets(pacman.tileX(), pacman.tileY(), pacman.getDirection(), presentTargets[present], directionsToTargets);
+        int[] indices = presentTargetIndices[present];
+        for (int i = 0; i < indices.length; i++) {
+            int offset = targetOffsets[indices[i]];
+            boolean[] directions = directionsToTargets[i];
+            for (int j = 0; j < 4; j++) {
+                inputs[offset + j] = directions[j] ? 1f : 0f;
+            }
+        }
+    }
+
+    /**
+     * Declares the layout of a {@link SensorPipeline}. Groups of inputs are
+     * laid out in the order they are declared.
+     */
+    public static final class Builder {
+        private int size;
+        private final List<Integer> wallProbeOffsets = new ArrayList<>();
+        private final List<Predicate<Tile>> targets = new ArrayList<>();
+        private final List<Predicate<Maze>> targetPresence = new ArrayList<>();
+        private final List<Integer> targetOffsets = new ArrayList<>();
+        private final List<Direction[]> ghostRays = new ArrayList<>();
+        private final List<Integer> ghostRayOffsets = new ArrayList<>();
+        private final List<Direction[]> ghostArrivals = new ArrayList<>();
+        private final List<Integer> ghostArrivalOffsets = new ArrayList<>();
+
+        /**
+         * Adds 4 inputs: 1 if pacman can move forward, left, right and behind.
+         *
+         * @return this builder
+         */
+        public @NotNull Builder wallProbes() {
+            wallProbeOffsets.add(size);
+            size += 4;
+            return this;
+        }
+
+        /**
+         * Adds 4 inputs: 1 for each of forward, left, right and behind that
+         * starts a shortest path to the closest tile matching the target.
+         *
+         * @param target    which tiles are targets, only depending on the tiles and on entities that do not move
+         * @param isPresent cheaply tells if the maze has any target at all, so
+         *                  the search can skip it, or <code>null</code> to always search
+         * @return this builder
+         */
+        public @NotNull Builder targets(@NotNull Predicate<Tile> target, @Nullable Predicate<Maze> isPresent) {
+            if (targets.size() == MAX_TARGETS)
+                throw new IllegalStateException("At most " + MAX_TARGETS + " target classes are supported");
+            targets.add(target);
+            targetPresence.add(isPresent);
+            targetOffsets.add(size);
+            size += 4;
+            return this;
+        }
+
+        /**
+         * Adds 2 inputs per direction: 1 if no dangerous ghost is in sight in
+         * that direction, and 1 if the first ghost in sight is frightened.
+         * See {@link GhostOccupancy#castRay(int, Direction)}.
+         *
+         * @param directions the absolute directions to look in
+         * @return this builder
+         */
+        public @NotNull Builder ghostRays(@NotNull Direction... directions) {
+            ghostRays.add(directions.clone());
+            ghostRayOffsets.add(size);
+            size += 2 * directions.length;
+            return this;
+        }
+
+        /**
+         * Adds 2 inputs per direction: how soon a dangerous (chasing or
+         * scattering) ghost, and how soon a frightened ghost, is predicted to
+         * reach the tile next to pacman in that direction. Each is 1 if a
+         * ghost is there now, falls towards 0 at the predictor's horizon, and
+         * is 0 if no ghost arrives. See {@link GhostPredictor}, which assumes
+         * pacman stays where he is.
+         *
+         * @param directions the absolute directions to look in
+         * @return this builder
+         */
+        public @NotNull Builder ghostArrivals(@NotNull Direction... directions) {
+            ghostArrivals.add(directions.clone());
+            ghostArrivalOffsets.add(size);
+            size += 2 * directions.length;
+            return this;
+        }
+
+        /**
+         * Creates a pipeline with this layout.
+         *
+         * @return the new pipeline
+         */
+        public @NotNull SensorPipeline build() {
+            return new SensorPipeline(this);
+        }
+    }
+}
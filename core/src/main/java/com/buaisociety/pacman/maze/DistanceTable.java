@@ -0,0 +1,165 @@
+package com.buaisociety.pacman.maze;
+
+import com.buaisociety.pacman.entity.Direction;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * The shortest walking distance (in tiles) between every pair of passable
+ * tiles of a maze, including paths through the tunnels that wrap around the
+ * edges of the maze.
+ *
+ * <p>Walls never change while a level is played (eaten pellets just become
+ * {@link TileState#SPACE}, which is still passable), so the table is computed
+ * once per {@link MazeTemplate} and shared by every maze of that level. Tiles
+ * are addressed by their flattened index, <code>y * width + x</code>.
+ */
+public final class DistanceTable {
+
+    /**
+     * Returned by {@link #distance(int, int)} when there is no path between
+     * the tiles (or when either tile is not passable).
+     */
+    public static final int UNREACHABLE = -1;
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private final int width;
+    private final int height;
+    private final int[] neighbors;  // [index * 4 + direction ordinal], shared with the template
+    private final int[] nodes;  // tile index -> node index, or -1 if not passable
+    private final int nodeCount;
+    private final short[] distances;  // nodeCount * nodeCount, UNREACHABLE if there is no path
+
+    DistanceTable(@NotNull MazeTemplate template) {
+        this.width = template.getWidth();
+        this.height = template.getHeight();
+        this.neighbors = template.getNeighbors();
+
+        // Only passable tiles get a row in the table
+        this.nodes = new int[width * height];
+        int nodeCount = 0;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                nodes[y * width + x] = template.getTileState(x, y).isPassable() ? nodeCount++ : -1;
+            }
+        }
+        this.nodeCount = nodeCount;
+        this.distances = new short[nodeCount * nodeCount];
+        Arrays.fill(distances, (short) UNREACHABLE);
+
+        // 1 BFS per passable tile
+        int[] queue = new int[width * height];
+        for (int start = 0; start < nodes.length; start++) {
+            int startNode = nodes[start];
+            if (startNode == -1)
+                continue;
+
+            int row = startNode * nodeCount;
+            int head = 0;
+            int tail = 0;
+            queue[tail++] = start;
+            distances[row + startNode] = 0;
+
+            while (head < tail) {
+                int index = queue[head++];
+                int distance = distances[row + nodes[index]];
+                for (int direction = 0; direction < DIRECTIONS.length; direction++) {
+                    int neighbor = neighbors[(index << 2) + direction];
+                    int neighborNode = nodes[neighbor];
+                    if (neighborNode == -1 || distances[row + neighborNode] != UNREACHABLE)
+                        continue;
+
+                    distances[row + neighborNode] = (short) (distance + 1);
+                    queue[tail++] = neighbor;
+                }
+            }
+        }
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns the flattened index of the given tile.
+     *
+     * @param x the x-coordinate of the tile
+     * @param y the y-coordinate of the tile
+     * @return the index of the tile
+     */
+    public int index(int x, int y) {
+        return y * width + x;
+    }
+
+    /**
+     * Returns the number of tiles pacman has to walk to get from 1 tile to
+     * another.
+     *
+     * @param from the index of the start tile
+     * @param to   the index of the destination tile
+     * @return the distance in tiles, or {@link #UNREACHABLE}
+     */
+    public int distance(int from, int to) {
+        int fromNode = nodes[from];
+        int toNode = nodes[to];
+        if (fromNode == -1 || toNode == -1)
+            return UNREACHABLE;
+        return distances[fromNode * nodeCount + toNode];
+    }
+
+    /**
+     * Returns the number of tiles pacman has to walk to get from 1 tile to
+     * another.
+     *
+     * @param fromX the x-coordinate of the start tile
+     * @param fromY the y-coordinate of the start tile
+     * @param toX   the x-coordinate of the destination tile
+     * @param toY   the y-coordinate of the destination tile
+     * @return the distance in tiles, or {@link #UNREACHABLE}
+     */
+    public int distance(int fromX, int fromY, int toX, int toY) {
+        return distance(index(fromX, fromY), index(toX, toY));
+    }
+
+    /**
+     * Returns the direction of the first step of a shortest path between 2
+     * tiles. When several directions are equally short, the first one in
+     * {@link Direction#values()} order is returned.
+     *
+     * @param from the index of the start tile
+     * @param to   the index of the destination tile
+     * @return the first step, or null if the tiles are the same or unreachable
+     */
+    public @Nullable Direction firstStep(int from, int to) {
+        int distance = distance(from, to);
+        if (distance <= 0)
+            return null;
+
+        for (Direction direction : DIRECTIONS) {
+            if (distance(neighbors[(from << 2) + direction.ordinal()], to) == distance - 1)
+                return direction;
+        }
+        throw new IllegalStateException("Inconsistent distance table");
+    }
+
+    /**
+     * Returns the direction of the first step of a shortest path between 2
+     * tiles. See {@link #firstStep(int, int)}.
+     *
+     * @param fromX the x-coordinate of the start tile
+     * @param fromY the y-coordinate of the start tile
+     * @param toX   the x-coordinate of the destination tile
+     * @param toY   the y-coordinate of the destination tile
+     * @return the first step, or null if the tiles are the same or unreachable
+     */
+    public @Nullable Direction firstStep(int fromX, int fromY, int toX, int toY) {
+        return firstStep(index(fromX, fromY), index(toX, toY));
+    }
+}
@@ -0,0 +1,80 @@
+package com.buaisociety.pacman.maze;
+
+import com.buaisociety.pacman.entity.Entity;
+import com.buaisociety.pacman.entity.EntityState;
+import com.buaisociety.pacman.sprite.Particle;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A reusable buffer holding the simulation state of 1 maze: the tiles and
+ * pellets, every entity, the ghost timers, the score and the state of the
+ * game's random number generator. Filled by {@link Maze#saveSnapshot(GameSnapshot)}
+ * and restored by {@link Maze#restoreSnapshot(GameSnapshot)}.
+ *
+ * <p>This is the forward model for lookahead: save, simulate a few ticks with
+ * {@link Maze#update()}, then restore. Restoring never touches textures or
+ * sprites, and it only copies the tiles when they changed since the snapshot
+ * was saved (or last restored), so it usually costs well under a microsecond
+ * per entity. Buffers are sized on the first save; reuse 1 snapshot per
+ * lookahead instead of creating a new one each time.
+ */
+public final class GameSnapshot {
+
+    @Nullable Maze maze;
+
+    // Tiles, only copied when they changed, see Maze#getTileVersion()
+    long tileVersion;
+    byte[] tileStates;
+    long[] pellets;
+    long[] powerPellets;
+    int[] pelletDistances;
+    int[] powerPelletDistances;
+    boolean pelletDistancesBuilt;  // false if the maze's field was not built, see TileDistanceField#build()
+    boolean powerPelletDistancesBuilt;
+    long pelletHash;
+    int totalPellets;
+    int pelletsRemaining;
+
+    // Timers
+    int ticks;
+    int freezeTicks;
+    int gameStartTicks;
+    int localChaseCounter;
+    int frightenedTimer;
+    int localNumGhostsEaten;
+    boolean isGhostChase;
+    int ghostChaseIndex;
+
+    // Entities, in update order
+    int entityCount;
+    Entity[] entities = new Entity[8];
+    EntityState[] entityStates = new EntityState[8];
+    final List<Particle> particles = new ArrayList<>();
+
+    // Game manager
+    int score;
+    int extraLives;
+    long randomState;
+
+    /**
+     * Returns the maze this snapshot was saved from, or <code>null</code> if
+     * nothing was saved yet.
+     *
+     * @return the maze of this snapshot
+     */
+    public @Nullable Maze getMaze() {
+        return maze;
+    }
+
+    /**
+     * Returns the score saved in this snapshot.
+     *
+     * @return the saved score
+     */
+    public int getScore() {
+        return score;
+    }
+}
@@ -0,0 +1,268 @@
+package com.buaisociety.pacman.maze;
+
+import com.buaisociety.pacman.entity.Direction;
+import com.buaisociety.pacman.entity.GhostEntity;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Which tiles hold a ghost, as 1 bitmap per row and 1 per column, so a ray
+ * along a row or column is a few bit operations instead of a walk over the
+ * tiles.
+ *
+ * <p>Ghosts are split into 2 bitmaps: frightened ghosts, and dangerous ghosts
+ * (every other ghost, eaten ones included, like the ray sensors have always
+ * treated them). Walls come from the {@link MazeTemplate}, since they never
+ * change during a game.
+ *
+ * <p>The bitmaps are rebuilt at most once per tick, the first time they are
+ * read, and reading never allocates. Use {@link Maze#getGhostOccupancy()} to
+ * share 1 occupancy between every behavior of a maze.
+ */
+public final class GhostOccupancy {
+
+    /**
+     * Returned by {@link #castRay(int, Direction)} when the ray hits a wall
+     * (or the edge of the maze) before any ghost.
+     */
+    public static final int NOTHING = 0;
+
+    /**
+     * Returned by {@link #castRay(int, Direction)} when the first ghost is dangerous.
+     */
+    public static final int DANGER = 1;
+
+    /**
+     * Returned by {@link #castRay(int, Direction)} when the first ghost is frightened.
+     */
+    public static final int FRIGHTENED = 2;
+
+    private final @NotNull Maze maze;
+    private final int width;
+    private final int height;
+    private final int rowWords;  // longs per row, bit x of a row is the tile at x
+    private final int columnWords;  // longs per column, bit y of a column is the tile at y
+
+    // [y * rowWords + word] and [x * columnWords + word]
+    private final long[] wallRows;
+    private final long[] wallColumns;
+    private final long[] dangerRows;
+    private final long[] dangerColumns;
+    private final long[] frightenedRows;
+    private final long[] frightenedColumns;
+
+    // The state the bitmaps were built from
+    private boolean built;
+    private int builtTicks;
+    private long builtHash;
+
+    GhostOccupancy(@NotNull Maze maze) {
+        this.maze = maze;
+        this.width = maze.getWidth();
+        this.height = maze.getHeight();
+        this.rowWords = MazeTemplate.wordCount(width);
+        this.columnWords = MazeTemplate.wordCount(height);
+
+        this.wallRows = new long[height * rowWords];
+        this.wallColumns = new long[width * columnWords];
+        this.dangerRows = new long[wallRows.length];
+        this.dangerColumns = new long[wallColumns.length];
+        this.frightenedRows = new long[wallRows.length];
+        this.frightenedColumns = new long[wallColumns.length];
+
+        byte[] tileStates = maze.getTemplate().copyTileStates();
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                if (tileStates[y * width + x] == TileState.WALL.ordinal())
+                    set(wallRows, wallColumns, x, y);
+            }
+        }
+    }
+
+    /**
+     * Returns true if a dangerous ghost is on the given tile.
+     *
+     * @param tile the index of the tile
+     * @return true if a dangerous ghost is on the tile
+     */
+    public boolean isDanger(int tile) {
+        update();
+        return get(dangerRows, tile % width, tile / width);
+    }
+
+    /**
+     * Returns true if a frightened ghost is on the given tile.
+     *
+     * @param tile the index of the tile
+     * @return true if a frightened ghost is on the tile
+     */
+    public boolean isFrightened(int tile) {
+        update();
+        return get(frightenedRows, tile % width, tile / width);
+    }
+
+    /**
+     * Looks from the given tile (not included) in the given direction until
+     * the first wall, and returns what the first ghost on the way is.
+     *
+     * <p>Rays follow the tile walk the ray sensors were trained with, whose
+     * bounds were swapped: a tile with x at or past the height of the maze,
+     * or y at or past its width, was outside the maze, and any other tile was
+     * wrapped into the maze. On mazes taller than they are wide, this means
+     * rays never reach the top rows (and see nothing when cast from them),
+     * and RIGHT rays wrap around to the left edge and keep going (a row
+     * without any wall then sees {@link #NOTHING}). Saved networks depend on
+     * these inputs, so this is kept as is.
+     *
+     * <p>When several ghosts share the first tile, the first of them in
+     * {@link Maze#getGhosts()} decides, since the walk looked ghosts up in
+     * that order. So a frightened ghost can hide a dangerous one on the same
+     * tile, exactly like it did for the trained networks.
+     *
+     * @param tile      the index of the tile to look from
+     * @param direction the direction to look in
+     * @return {@link #NOTHING}, {@link #DANGER} or {@link #FRIGHTENED}
+     */
+    public int castRay(int tile, @NotNull Direction direction) {
+        update();
+        int x = tile % width;
+        int y = tile / width;
+        // The bounds of the walk, see above
+        int boundX = height;
+        int boundY = width;
+        switch (direction) {
+            case RIGHT -> {
+                int hit = y >= boundY ? -1 : scanForward(wallRows, dangerRows, frightenedRows, y * rowWords, x + 1, width, boundX);
+                return hit == -1 ? NOTHING : classify(hit, y);
+            }
+            case LEFT -> {
+                int hit = y >= boundY || x - 1 >= boundX ? -1 : scanDown(wallRows, dangerRows, frightenedRows, y * rowWords, x - 1);
+                return hit == -1 ? NOTHING : classify(hit, y);
+            }
+            case UP -> {
+                int hit = x >= boundX ? -1 : scanForward(wallColumns, dangerColumns, frightenedColumns, x * columnWords, y + 1, height, boundY);
+                return hit == -1 ? NOTHING : classify(x, hit);
+            }
+            case DOWN -> {
+                int hit = x >= boundX || y - 1 >= boundY ? -1 : scanDown(wallColumns, dangerColumns, frightenedColumns, x * columnWords, y - 1);
+                return hit == -1 ? NOTHING : classify(x, hit);
+            }
+        }
+        throw new IllegalArgumentException("Unknown direction: " + direction);
+    }
+
+    /**
+     * Builds the bitmaps again, unless the ghosts have not changed since the
+     * last build.
+     */
+    public void update() {
+        long hash = maze.getStateHash();
+        if (built && builtTicks == maze.ticks && builtHash == hash)
+            return;
+        built = true;
+        builtTicks = maze.ticks;
+        builtHash = hash;
+
+        Arrays.fill(dangerRows, 0);
+        Arrays.fill(dangerColumns, 0);
+        Arrays.fill(frightenedRows, 0);
+        Arrays.fill(frightenedColumns, 0);
+        List<GhostEntity> ghosts = maze.getGhosts();
+        for (int i = 0; i < ghosts.size(); i++) {
+            GhostEntity ghost = ghosts.get(i);
+            int x = ghost.tileX();
+            int y = ghost.tileY();
+            if (x < 0 || x >= width || y < 0 || y >= height)
+                continue;  // never on a tile of the maze, so rays never saw it
+            if (ghost.isFrightened())
+                set(frightenedRows, frightenedColumns, x, y);
+            else
+                set(dangerRows, dangerColumns, x, y);
+        }
+    }
+
+    private void set(long[] rows, long[] columns, int x, int y) {
+        rows[y * rowWords + (x >>> 6)] |= 1L << x;
+        columns[x * columnWords + (y >>> 6)] |= 1L << y;
+    }
+
+    private boolean get(long[] rows, int x, int y) {
+        return (rows[y * rowWords + (x >>> 6)] & 1L << x) != 0;
+    }
+
+    /**
+     * Finds the first wall or ghost of a line at or after <code>from</code>,
+     * stopping before <code>limit</code>. A limit past the end of the line
+     * (see {@link #castRay(int, Direction)}) wraps around to the start of the
+     * line instead, and keeps going for 1 whole line.
+     *
+     * @return the position on the line, or -1 if there is none
+     */
+    private static int scanForward(long[] walls, long[] danger, long[] frightened, int base, int from, int length, int limit) {
+        if (limit <= length)
+            return scanUp(walls, danger, frightened, base, from, limit);
+
+        int hit = scanUp(walls, danger, frightened, base, from, length);
+        if (hit == -1)
+            hit = scanUp(walls, danger, frightened, base, 0, length);
+        return hit;
+    }
+
+    /**
+     * Finds the lowest bit in <code>[from, end)</code> that is a wall or a
+     * ghost. Bits past the end of the line are never set.
+     *
+     * @return the bit, or -1 if there is none
+     */
+    private static int scanUp(long[] walls, long[] danger, long[] frightened, int base, int from, int end) {
+        for (int word = from >>> 6; word << 6 < end; word++) {
+            long mask = word == from >>> 6 ? -1L << from : -1L;
+            if (end - (word << 6) < 64)
+                mask &= (1L << end) - 1;
+            long hits = (walls[base + word] | danger[base + word] | frightened[base + word]) & mask;
+            if (hits != 0)
+                return (word << 6) + Long.numberOfTrailingZeros(hits);
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the highest bit at or below <code>from</code> that is a wall or a
+     * ghost. A negative <code>from</code> is before the start of the line.
+     *
+     * @return the bit, or -1 if there is none
+     */
+    private static int scanDown(long[] walls, long[] danger, long[] frightened, int base, int from) {
+        for (int word = from >> 6; word >= 0; word--) {
+            long mask = word == from >> 6 ? -1L >>> (63 - (from & 63)) : -1L;
+            long hits = (walls[base + word] | danger[base + word] | frightened[base + word]) & mask;
+            if (hits != 0)
+                return (word << 6) + 63 - Long.numberOfLeadingZeros(hits);
+        }
+        return -1;
+    }
+
+    /**
+     * Returns what a ray sees on the given wall or ghost tile.
+     */
+    private int classify(int x, int y) {
+        boolean danger = get(dangerRows, x, y);
+        boolean frightened = get(frightenedRows, x, y);
+        if (danger && frightened) {
+            // Rare: the first ghost on the tile decides, see castRay
+            List<GhostEntity> ghosts = maze.getGhosts();
+            for (int i = 0; i < ghosts.size(); i++) {
+                GhostEntity ghost = ghosts.get(i);
+                if (ghost.tileX() == x && ghost.tileY() == y)
+                    return ghost.isFrightened() ? FRIGHTENED : DANGER;
+            }
+        }
+        if (danger)
+            return DANGER;
+        if (frightened)
+            return FRIGHTENED;
+        return NOTHING;  // a wall
+    }
+}
@@ -0,0 +1,143 @@
+package com.buaisociety.pacman.maze;
+
+import com.buaisociety.pacman.entity.Entity;
+import com.buaisociety.pacman.entity.GhostEntity;
+import com.buaisociety.pacman.entity.GhostState;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Predicts where the ghosts will be during the next few ticks, as the
+ * earliest tick any ghost reaches each tile.
+ *
+ * <p>Chasing, scattering and eaten ghosts move deterministically, so instead
+ * of casting rays from pacman, the predictor simulates only the ghosts (see
+ * {@link Maze#stepGhosts()}) on a {@link Maze#createReplica replica} of the
+ * maze, assuming pacman stays where he is. Frightened ghosts use the game's
+ * random number generator, so their predictions only hold as long as nothing
+ * else draws from it. Dangerous (chasing or scattering) and frightened ghosts
+ * are tracked separately; eaten ghosts are ignored.
+ *
+ * <p>The prediction is computed at most once per tick, the first time it is
+ * read, and then read in O(1) per tile. Use {@link Maze#getGhostPredictor()}
+ * to share 1 predictor between every behavior of a maze.
+ */
+public final class GhostPredictor {
+
+    /**
+     * Returned when no ghost reaches the tile within the horizon.
+     */
+    public static final int NEVER = Integer.MAX_VALUE;
+
+    /**
+     * The number of ticks predicted by {@link Maze#getGhostPredictor()}.
+     */
+    public static final int DEFAULT_HORIZON = 60;
+
+    private final @NotNull Maze maze;
+    private final int horizon;
+    private final @NotNull GameSnapshot snapshot = new GameSnapshot();
+    private @Nullable Maze replica;  // created on the first prediction
+
+    private final int[] dangerArrivals;  // [tile], the earliest tick a chasing or scattering ghost is on the tile
+    private final int[] frightenedArrivals;  // [tile], the earliest tick a frightened ghost is on the tile
+
+    // The state the arrivals were predicted from
+    private boolean predicted;
+    private int predictedTicks;
+    private long predictedHash;
+
+    /**
+     * Creates a predictor for the given maze.
+     *
+     * @param maze    the maze to predict
+     * @param horizon the number of ticks to simulate
+     */
+    public GhostPredictor(@NotNull Maze maze, int horizon) {
+        this.maze = maze;
+        this.horizon = horizon;
+        this.dangerArrivals = new int[maze.tileStates.length];
+        this.frightenedArrivals = new int[maze.tileStates.length];
+    }
+
+    /**
+     * Returns the number of ticks this predictor simulates.
+     *
+     * @return the horizon, in ticks
+     */
+    public int getHorizon() {
+        return horizon;
+    }
+
+    /**
+     * Returns the earliest tick (0 is now) a chasing or scattering ghost is
+     * predicted to be on the given tile.
+     *
+     * @param tile the index of the tile
+     * @return the earliest arrival, or {@link #NEVER}
+     */
+    public int getDangerArrival(int tile) {
+        update();
+        return dangerArrivals[tile];
+    }
+
+    /**
+     * Returns the earliest tick (0 is now) a frightened ghost is predicted to
+     * be on the given tile.
+     *
+     * @param tile the index of the tile
+     * @return the earliest arrival, or {@link #NEVER}
+     */
+    public int getFrightenedArrival(int tile) {
+        update();
+        return frightenedArrivals[tile];
+    }
+
+    /**
+     * Predicts the ghosts again, unless the maze is still in the state of the
+     * last prediction.
+     */
+    public void update() {
+        long hash = maze.getStateHash();
+        if (predicted && predictedTicks == maze.ticks && predictedHash == hash)
+            return;
+        predicted = true;
+        predictedTicks = maze.ticks;
+        predictedHash = hash;
+
+        Arrays.fill(dangerArrivals, NEVER);
+        Arrays.fill(frightenedArrivals, NEVER);
+        record(maze.getGhosts(), 0);
+
+        if (replica == null)
+            replica = maze.createReplica(Entity::getDirection);  // pacman is never updated
+        maze.saveSnapshot(snapshot);
+        replica.restoreSnapshot(snapshot);
+        List<GhostEntity> ghosts = replica.getGhosts();
+        for (int tick = 1; tick <= horizon; tick++) {
+            replica.stepGhosts();
+            record(ghosts, tick);
+        }
+    }
+
+    private void record(@NotNull List<GhostEntity> ghosts, int tick) {
+        for (int i = 0; i < ghosts.size(); i++) {
+            GhostEntity ghost = ghosts.get(i);
+            GhostState state = ghost.getState();
+            int[] arrivals;
+            if (state == GhostState.CHASE || state == GhostState.SCATTER)
+                arrivals = dangerArrivals;
+            else if (state == GhostState.FRIGHTENED)
+                arrivals = frightenedArrivals;
+            else
+                continue;
+
+            int tile = ghost.tileIndex();
+            if (tile >= 0 && tile < arrivals.length && arrivals[tile] == NEVER)
+                arrivals[tile] = tick;
+        }
+    }
+}
@@ -1,27 +1,30 @@
 package com.buaisociety.pacman.maze;
 
-import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.graphics.Color;
-import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.graphics.g2d.Sprite;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.buaisociety.pacman.GameManager;
 import com.buaisociety.pacman.entity.Direction;
 import com.buaisociety.pacman.entity.Entity;
+import com.buaisociety.pacman.entity.EntityState;
 import com.buaisociety.pacman.entity.EntityType;
 import com.buaisociety.pacman.entity.FruitEntity;
 import com.buaisociety.pacman.entity.GhostEntity;
 import com.buaisociety.pacman.entity.GhostState;
 import com.buaisociety.pacman.entity.PacmanEntity;
+import com.buaisociety.pacman.entity.behavior.Behavior;
 import com.buaisociety.pacman.event.EntityPreSpawnEvent;
 import com.buaisociety.pacman.event.EntityRemoveEvent;
 import com.buaisociety.pacman.event.EntitySpawnEvent;
 import com.buaisociety.pacman.event.GlobalBehaviorEvent;
+import com.buaisociety.pacman.sprite.AssetRegistry;
 import com.buaisociety.pacman.sprite.CutoutSpriteSheet;
 import com.buaisociety.pacman.sprite.GrayscaleSpriteSheet;
 import com.buaisociety.pacman.sprite.Particle;
 import com.buaisociety.pacman.sprite.TextSpriteSheet;
 import com.buaisociety.pacman.util.Disposable;
+import com.buaisociety.pacman.util.EventSystem;
+import com.buaisociety.pacman.util.Zobrist;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.joml.Vector2d;
@@ -30,8 +33,12 @@ import org.joml.Vector2i;
 import org.joml.Vector2ic;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Represents a maze in the game of Pacman. Mazes are responsible for keeping
@@ -57,19 +64,73 @@ public class Maze implements Disposable {
         new int[]{420, 1200, 120, 1200, 300, 61980, 1, -1},
         new int[]{300, 1200, 300, 1200, 300, 62220, 1, -1}
     };
+    private static final TileState[] TILE_STATES = TileState.values();
+    private static final boolean[] PASSABLE = new boolean[TILE_STATES.length];  // [TileState ordinal]
+
+    static {
+        for (TileState state : TILE_STATES) {
+            PASSABLE[state.ordinal()] = state.isPassable();
+        }
+    }
+
     public static final int[] LEVEL_FRIGHT_TIMES = new int[]{360, 300, 240, 180, 120, 300, 120, 120, 60, 300, 120, 60, 60, 180, 60, 60, 0, 60, 0};
 
+    /**
+     * The number of pellets each ghost waits for before leaving the ghost pen,
+     * for level 1, level 2, and every later level.
+     */
+    private static final int[][] GHOST_RELEASE_BOUNDS = new int[][]{
+        new int[]{0, 0, 30, 60},
+        new int[]{0, 0, 0, 50},
+        new int[]{0, 0, 0, 0}
+    };
+
 
     protected @NotNull GameManager gameManager;
-    protected @NotNull Sprite levelSprite;
-    protected @NotNull GrayscaleSpriteSheet pelletSprite;
-    protected @NotNull GrayscaleSpriteSheet powerPelletSprite;
-    protected @NotNull CutoutSpriteSheet fruitSprite;
-    protected @NotNull GrayscaleSpriteSheet bonusPointsSprite;
-    protected @NotNull Tile[][] tiles;
+    protected @NotNull MazeTemplate template;
+    protected @NotNull String levelSpritePath;
+
+    // Sprites are created on the first render, so headless games never need a graphics context
+    protected @Nullable Sprite levelSprite;
+    protected @Nullable GrayscaleSpriteSheet pelletSprite;
+    protected @Nullable GrayscaleSpriteSheet powerPelletSprite;
+    protected @Nullable CutoutSpriteSheet fruitSprite;
+    protected @Nullable GrayscaleSpriteSheet bonusPointsSprite;
+    protected final byte[] tileStates;  // [y * width + x], TileState ordinals
+    private final int[] neighbors;  // [index * 4 + direction ordinal], shared with the template
+    private final long[] pellets;  // bit i is set when tile i is a pellet, see MazeTemplate#getPellets()
+    private final long[] powerPellets;  // bit i is set when tile i is a power pellet
+    private long pelletHash;  // XOR of the Zobrist keys of every pellet
+    private long tileVersion;  // increases whenever a tile changes, so snapshots can skip copying unchanged tiles
+    private long modCount;  // increases whenever a tile changes or an entity is added or removed, see getModCount()
+    private @Nullable Maze restoredMaze;  // the tiles equal restoredMaze's tiles at restoredVersion, as long as tileVersion == restoredTileVersion
+    private long restoredVersion;
+    private long restoredTileVersion;
+
+    // Replicas (see createReplica) simulate the entities of their source maze with their own copies
+    private @Nullable Maze replicaSource;
+    private @Nullable Behavior replicaPacmanBehavior;
+    private final @NotNull Map<Entity, Entity> replicaEntities = new ConcurrentHashMap<>();  // entities compare by identity
+    private long entityHash;  // XOR of the Zobrist keys of every entity in the entities list
+    private @Nullable GhostPredictor ghostPredictor;  // created on the first getGhostPredictor()
+    private @Nullable GhostOccupancy ghostOccupancy;  // created on the first getGhostOccupancy()
+    private @Nullable Tile[] tileViews;  // created on the first getTile(int), see createTileViews()
+    private @Nullable Tile[][] tiles;  // created on the first getTiles()
     protected int totalPellets;
     protected int pelletsRemaining;
+    protected @NotNull TileDistanceField pelletDistances;
+    protected @NotNull TileDistanceField powerPelletDistances;
     protected @NotNull List<Entity> entities;
+    private final @NotNull List<Entity> entitiesView;
+    private final int[] tileEntityCounts;  // [type.ordinal() * tiles + tile index], the number of entities of each type on each tile
+    private final int[] entityCounts;  // [type.ordinal()], the number of entities of each type in the maze
+
+    // Typed references to the entities in the list above, so hot code never has to scan the list
+    private @Nullable PacmanEntity pacman;
+    private final @NotNull List<GhostEntity> ghosts;
+    private final @NotNull List<GhostEntity> ghostsView;
+    private @Nullable FruitEntity fruit;
+
     protected int ticks;
     protected int freezeTicks;
     private int gameStartTicks;
@@ -87,34 +148,28 @@ public class Maze implements Disposable {
 
     private Vector2ic dimensions;
 
-    public Maze(
-        @NotNull GameManager gameManager,
-        @NotNull Sprite levelSprite,
-        @NotNull TileState[][] tiles,
-        @NotNull Vector2i fruitSpawnPixel
-    ) {
+    public Maze(@NotNull GameManager gameManager, @NotNull MazeTemplate template) {
         this.gameManager = gameManager;
-        this.levelSprite = levelSprite;
-        this.tiles = new Tile[tiles.length][tiles[0].length];
-        for (int y = 0; y < tiles.length; y++) {
-            for (int x = 0; x < tiles[y].length; x++) {
-                this.tiles[y][x] = new Tile(this, new Vector2i(x, y), tiles[y][x]);
-            }
-        }
+        this.template = template;
+        this.levelSpritePath = template.getLevelSpritePath();
+        this.tileStates = template.copyTileStates();
+        this.neighbors = template.getNeighbors();
+        this.pellets = template.getPellets().clone();
+        this.powerPellets = template.getPowerPellets().clone();
         this.entities = new ArrayList<>();
-        this.tileDimensions = new Vector2i(tiles[0].length, tiles.length);
+        this.entitiesView = Collections.unmodifiableList(entities);
+        this.tileEntityCounts = new int[EntityType.values().length * template.getWidth() * template.getHeight()];
+        this.entityCounts = new int[EntityType.values().length];
+        this.ghosts = new ArrayList<>();
+        this.ghostsView = Collections.unmodifiableList(ghosts);
+        this.tileDimensions = new Vector2i(template.getWidth(), template.getHeight());
         this.pixelDimensions = new Vector2i(tileDimensions).mul(TILE_SIZE);
-        this.fruitSpawnPixel = fruitSpawnPixel;
+        this.fruitSpawnPixel = new Vector2i(template.getFruitSpawnPixel());
         this.particles = new ArrayList<>();
+        this.pelletDistances = new TileDistanceField(this, state -> state == TileState.PELLET || state == TileState.POWER_PELLET);
+        this.powerPelletDistances = new TileDistanceField(this, state -> state == TileState.POWER_PELLET);
         initTiles();
 
-        pelletSprite = new GrayscaleSpriteSheet(new Texture(Gdx.files.internal("sprites/pellet.png")), 8);
-        pelletSprite.setColors(Color.CLEAR, new Color(0xffb897ff));
-        powerPelletSprite = new GrayscaleSpriteSheet(new Texture(Gdx.files.internal("sprites/power-pellet.png")), 8);
-        powerPelletSprite.setColors(Color.CLEAR, new Color(0xffb897ff));
-        fruitSprite = new CutoutSpriteSheet(new Texture(Gdx.files.internal("sprites/fruit-sprite.png")), 16);
-        bonusPointsSprite = new GrayscaleSpriteSheet(new Texture(Gdx.files.internal("sprites/bonus-points-sprite.png")), new Vector2i(8 * 4, 8 * 2));
-
         // Start with chase so the first update flips it to scatter
         isGhostChase = true;
 
@@ -122,28 +177,425 @@ public class Maze implements Disposable {
         gameStartTicks = 60 * 4;
 
         // Set the dimensions based on the size of the tiles array
-        dimensions = new Vector2i(tiles.length, tiles[0].length);
+        dimensions = new Vector2i(template.getHeight(), template.getWidth());
     }
 
     /**
      * Responsible for initializing the tiles array, and setting the initial variables of this Maze instance.
      */
     public void initTiles() {
-        if (tiles == null) {
+        if (tileStates == null) {
             throw new IllegalStateException("Tiles array must be initialized before calling initTiles()");
         }
 
-        pelletsRemaining = 0;
-        totalPellets = 0;
-        for (Tile[] row : tiles) {
-            for (Tile tile : row) {
-                TileState state = tile.getState();
-                if (state == TileState.PELLET || state == TileState.POWER_PELLET) {
-                    pelletsRemaining++;
-                    totalPellets++;
-                }
+        int pellets = 0;
+        for (int i = 0; i < this.pellets.length; i++) {
+            pellets += Long.bitCount(this.pellets[i]) + Long.bitCount(powerPellets[i]);
+        }
+        pelletsRemaining = pellets;
+        totalPellets = pellets;
+
+        pelletHash = 0;
+        for (int word = 0; word < this.pellets.length; word++) {
+            pelletHash ^= hashPellets(this.pellets[word], word, false);
+            pelletHash ^= hashPellets(powerPellets[word], word, true);
+        }
+
+        pelletDistances.invalidate();
+        powerPelletDistances.invalidate();
+        tileVersion++;
+        modCount++;
+    }
+
+    private static long hashPellets(long bits, int word, boolean powerPellet) {
+        long hash = 0;
+        while (bits != 0) {
+            hash ^= Zobrist.pelletKey(powerPellet, (word << 6) + Long.numberOfTrailingZeros(bits));
+            bits &= bits - 1;
+        }
+        return hash;
+    }
+
+    /**
+     * Returns a 64-bit Zobrist hash of the current game state. The hash
+     * covers the pellets left, the tile, direction and {@link GhostState} of
+     * every entity, the frightened timer and the chase/scatter phase. It is
+     * updated as the state changes, so this only costs a few operations.
+     *
+     * <p>Equal states always have equal hashes. Different states have
+     * different hashes with overwhelming probability, as long as they differ
+     * in something the hash covers: sub-tile pixel positions and the ticks
+     * left in a chase/scatter phase are not part of the hash.
+     *
+     * @return the hash of the current game state
+     */
+    public long getStateHash() {
+        return pelletHash ^ entityHash ^ Zobrist.phaseKey(frightenedTimer, ghostChaseIndex, isGhostChase);
+    }
+
+    /**
+     * Returns a counter that increases whenever a tile changes (a pellet is
+     * eaten, for example) or an entity is added or removed. Entities moving
+     * around do not change it. Sensors that only depend on the tiles and on
+     * which entities exist can cache their results until it changes.
+     *
+     * @return the modification counter
+     */
+    public long getModCount() {
+        return modCount;
+    }
+
+    /**
+     * Restores every tile (and every pellet) to its initial state from the
+     * template, then calls {@link #initTiles()}. Entities are not touched.
+     */
+    public void resetTiles() {
+        template.copyTileStates(tileStates);
+        System.arraycopy(template.getPellets(), 0, pellets, 0, pellets.length);
+        System.arraycopy(template.getPowerPellets(), 0, powerPellets, 0, powerPellets.length);
+        initTiles();
+    }
+
+    /**
+     * Removes every pellet and power pellet whose bit is not set in the given
+     * mask, then calls {@link #initTiles()}. Bit <code>i</code> of the mask is
+     * {@code mask[i >>> 6] & (1L << i)}, where <code>i</code> is the
+     * index of a tile (see {@link #getTileIndex(int, int)}).
+     *
+     * <p>This is much cheaper than setting tiles one at a time, since the
+     * distance fields are only rebuilt once, when next read.
+     *
+     * @param mask the pellets to keep, with a length of at least {@link #getPelletWordCount()}
+     */
+    public void retainPellets(long @NotNull [] mask) {
+        byte space = (byte) TileState.SPACE.ordinal();
+        for (int word = 0; word < pellets.length; word++) {
+            long removed = (pellets[word] | powerPellets[word]) & ~mask[word];
+            pellets[word] &= mask[word];
+            powerPellets[word] &= mask[word];
+            while (removed != 0) {
+                tileStates[(word << 6) + Long.numberOfTrailingZeros(removed)] = space;
+                removed &= removed - 1;
+            }
+        }
+        initTiles();
+    }
+
+    /**
+     * Returns the number of <code>long</code> words in a pellet mask of this
+     * maze, see {@link #retainPellets(long[])}.
+     *
+     * @return the number of words
+     */
+    public int getPelletWordCount() {
+        return pellets.length;
+    }
+
+    /**
+     * Returns true if the tile at the given index is a pellet or a power
+     * pellet, without looking up its state.
+     *
+     * @param index The index of the tile.
+     * @return true if the tile has a pellet on it.
+     */
+    public final boolean hasPellet(int index) {
+        return ((pellets[index >>> 6] | powerPellets[index >>> 6]) & (1L << index)) != 0;
+    }
+
+    /**
+     * Returns the flattened index (<code>y * width + x</code>) of the given
+     * tile, wrapping the coordinates around the edges of the maze.
+     *
+     * @param x The x-coordinate of the tile.
+     * @param y The y-coordinate of the tile.
+     * @return The index of the tile.
+     */
+    public final int getTileIndex(int x, int y) {
+        y = (y + tileDimensions.y) % tileDimensions.y;
+        x = (x + tileDimensions.x) % tileDimensions.x;
+        return y * tileDimensions.x + x;
+    }
+
+    /**
+     * Returns the index of the tile next to the given tile, wrapping around
+     * the edges of the maze.
+     *
+     * @param index     The index of the tile.
+     * @param direction The direction of the neighbor.
+     * @return The index of the neighbor.
+     */
+    public final int getNeighbor(int index, @NotNull Direction direction) {
+        return neighbors[(index << 2) + direction.ordinal()];
+    }
+
+    /**
+     * Returns the state of the tile at the given index.
+     *
+     * @param index The index of the tile.
+     * @return The state of the tile.
+     */
+    public final @NotNull TileState getTileState(int index) {
+        return TILE_STATES[tileStates[index]];
+    }
+
+    /**
+     * Returns true if the tile at the given index is passable. See
+     * {@link TileState#isPassable()}.
+     *
+     * @param index The index of the tile.
+     * @return true if the tile is passable.
+     */
+    public final boolean isPassable(int index) {
+        return PASSABLE[tileStates[index]];
+    }
+
+    /**
+     * Sets the state of the tile at the given index, keeping the distance
+     * fields up to date.
+     *
+     * @param index The index of the tile.
+     * @param state The new state of the tile.
+     */
+    public void setTileState(int index, @NotNull TileState state) {
+        TileState previous = TILE_STATES[tileStates[index]];
+        if (previous == state)
+            return;
+
+        tileStates[index] = (byte) state.ordinal();
+        pelletHash ^= pelletKey(previous, index) ^ pelletKey(state, index);
+        setBit(pellets, index, state == TileState.PELLET);
+        setBit(powerPellets, index, state == TileState.POWER_PELLET);
+        pelletDistances.update(index, previous);
+        powerPelletDistances.update(index, previous);
+        tileVersion++;
+        modCount++;
+    }
+
+    private static long pelletKey(@NotNull TileState state, int index) {
+        return switch (state) {
+            case PELLET -> Zobrist.pelletKey(false, index);
+            case POWER_PELLET -> Zobrist.pelletKey(true, index);
+            default -> 0;
+        };
+    }
+
+    private static void setBit(long[] bits, int index, boolean value) {
+        if (value)
+            bits[index >>> 6] |= 1L << index;
+        else
+            bits[index >>> 6] &= ~(1L << index);
+    }
+
+    /**
+     * Returns the x-coordinate of the center pixel of the tile at the given
+     * index. See {@link Tile#getCenterPixel()}.
+     *
+     * @param index The index of the tile.
+     * @return The x-coordinate of the center pixel.
+     */
+    public final int getCenterPixelX(int index) {
+        return (index % tileDimensions.x) * TILE_SIZE + TILE_SIZE / 2 - 1;
+    }
+
+    /**
+     * Returns the y-coordinate of the center pixel of the tile at the given
+     * index. See {@link Tile#getCenterPixel()}.
+     *
+     * @param index The index of the tile.
+     * @return The y-coordinate of the center pixel.
+     */
+    public final int getCenterPixelY(int index) {
+        return (index / tileDimensions.x) * TILE_SIZE + TILE_SIZE / 2 - 1;
+    }
+
+    /**
+     * Saves the simulation state of this maze (and of its game) into the
+     * given snapshot, overwriting whatever the snapshot held before. See
+     * {@link GameSnapshot}.
+     *
+     * @param snapshot The snapshot to fill.
+     */
+    public void saveSnapshot(@NotNull GameSnapshot snapshot) {
+        if (snapshot.maze != this || snapshot.tileVersion != tileVersion) {
+            if (snapshot.maze != this) {
+                snapshot.tileStates = new byte[tileStates.length];
+                snapshot.pellets = new long[pellets.length];
+                snapshot.powerPellets = new long[powerPellets.length];
+                snapshot.pelletDistances = new int[tileStates.length];
+                snapshot.powerPelletDistances = new int[tileStates.length];
+                snapshot.maze = this;
             }
+            System.arraycopy(tileStates, 0, snapshot.tileStates, 0, tileStates.length);
+            System.arraycopy(pellets, 0, snapshot.pellets, 0, pellets.length);
+            System.arraycopy(powerPellets, 0, snapshot.powerPellets, 0, powerPellets.length);
+            snapshot.pelletDistancesBuilt = pelletDistances.copyDistances(snapshot.pelletDistances);
+            snapshot.powerPelletDistancesBuilt = powerPelletDistances.copyDistances(snapshot.powerPelletDistances);
+            snapshot.tileVersion = tileVersion;
+        }
+        snapshot.pelletHash = pelletHash;
+        snapshot.totalPellets = totalPellets;
+        snapshot.pelletsRemaining = pelletsRemaining;
+
+        snapshot.ticks = ticks;
+        snapshot.freezeTicks = freezeTicks;
+        snapshot.gameStartTicks = gameStartTicks;
+        snapshot.localChaseCounter = localChaseCounter;
+        snapshot.frightenedTimer = frightenedTimer;
+        snapshot.localNumGhostsEaten = localNumGhostsEaten;
+        snapshot.isGhostChase = isGhostChase;
+        snapshot.ghostChaseIndex = ghostChaseIndex;
+
+        int count = entities.size();
+        if (snapshot.entities.length < count) {
+            snapshot.entities = Arrays.copyOf(snapshot.entities, count);
+            snapshot.entityStates = Arrays.copyOf(snapshot.entityStates, count);
+        }
+        for (int i = 0; i < count; i++) {
+            Entity entity = entities.get(i);
+            EntityState state = snapshot.entityStates[i];
+            if (state == null)
+                snapshot.entityStates[i] = state = new EntityState();
+            entity.saveState(state);
+            snapshot.entities[i] = entity;
+        }
+        if (snapshot.entityCount > count)
+            Arrays.fill(snapshot.entities, count, snapshot.entityCount, null);  // let removed entities be collected
+        snapshot.entityCount = count;
+        snapshot.particles.clear();
+        snapshot.particles.addAll(particles);
+
+        snapshot.score = gameManager.getScore();
+        snapshot.extraLives = gameManager.getExtraLives();
+        snapshot.randomState = gameManager.getRandom().getState();
+    }
+
+    /**
+     * Puts this maze (and its game) back into the state saved in the given
+     * snapshot. Entities that were spawned since are removed, and entities
+     * that were removed since are added back. No events are fired.
+     *
+     * <p>A {@link #createReplica(Behavior) replica} may also restore
+     * snapshots of its source maze, which puts its own copies of the source's
+     * entities into the saved state. The snapshot is only read, so many
+     * replicas may restore the same snapshot at once.
+     *
+     * @param snapshot The snapshot to restore, saved from this maze or from its source.
+     * @throws IllegalArgumentException If the snapshot was saved from another maze.
+     */
+    public void restoreSnapshot(@NotNull GameSnapshot snapshot) {
+        Maze source = snapshot.maze;
+        boolean isReplica = source != this;
+        if (isReplica && (source == null || source != replicaSource))
+            throw new IllegalArgumentException("Snapshot was saved from a different maze");
+
+        // The tiles are only copied back when they changed
+        boolean tilesMatch = source == this && tileVersion == snapshot.tileVersion
+            || source == restoredMaze && snapshot.tileVersion == restoredVersion && tileVersion == restoredTileVersion;
+        if (!tilesMatch) {
+            System.arraycopy(snapshot.tileStates, 0, tileStates, 0, tileStates.length);
+            System.arraycopy(snapshot.pellets, 0, pellets, 0, pellets.length);
+            System.arraycopy(snapshot.powerPellets, 0, powerPellets, 0, powerPellets.length);
+            pelletDistances.setDistances(snapshot.pelletDistances, snapshot.pelletDistancesBuilt);
+            powerPelletDistances.setDistances(snapshot.powerPelletDistances, snapshot.powerPelletDistancesBuilt);
+            tileVersion++;
+            modCount++;
+            restoredMaze = source;
+            restoredVersion = snapshot.tileVersion;
+            restoredTileVersion = tileVersion;
+        }
+        pelletHash = snapshot.pelletHash;
+        totalPellets = snapshot.totalPellets;
+        pelletsRemaining = snapshot.pelletsRemaining;
+
+        ticks = snapshot.ticks;
+        freezeTicks = snapshot.freezeTicks;
+        gameStartTicks = snapshot.gameStartTicks;
+        localChaseCounter = snapshot.localChaseCounter;
+        frightenedTimer = snapshot.frightenedTimer;
+        localNumGhostsEaten = snapshot.localNumGhostsEaten;
+        isGhostChase = snapshot.isGhostChase;
+        ghostChaseIndex = snapshot.ghostChaseIndex;
+
+        // Forget every entity, then add the saved ones back in their saved
+        // state, which tracks their tiles and hash keys again
+        for (int i = 0; i < entities.size(); i++) {
+            untrackEntity(entities.get(i));
+        }
+        entities.clear();
+        for (int i = 0; i < snapshot.entityCount; i++) {
+            Entity entity = isReplica ? getReplicaEntity(snapshot.entities[i]) : snapshot.entities[i];
+            entity.restoreState(snapshot.entityStates[i]);
+            addEntity(entity);
+        }
+        // Replicas keep their own particles, see addParticles
+        if (!isReplica) {
+            particles.clear();
+            particles.addAll(snapshot.particles);
+        }
+
+        gameManager.setScore(snapshot.score);
+        gameManager.setExtraLives(snapshot.extraLives);
+        gameManager.getRandom().setState(snapshot.randomState);
+    }
+
+    /**
+     * Creates a headless copy of this maze, with its own game manager (see
+     * {@link GameManager#createReplica()}) and its own copy of every entity,
+     * in the current state of this maze. The replica can be updated on any
+     * thread without affecting this maze, and it can be put back into any
+     * state of this maze with {@link #restoreSnapshot(GameSnapshot)}. Search
+     * based behaviors use replicas to look ahead.
+     *
+     * <p>Must be called from the thread that updates this maze.
+     *
+     * @param pacmanBehavior The behavior of pacman in the replica.
+     * @return The new replica.
+     */
+    public @NotNull Maze createReplica(@NotNull Behavior pacmanBehavior) {
+        Maze replica = new Maze(gameManager.createReplica(), template);
+        replica.replicaSource = this;
+        replica.replicaPacmanBehavior = pacmanBehavior;
+
+        GameSnapshot snapshot = new GameSnapshot();
+        saveSnapshot(snapshot);
+        replica.restoreSnapshot(snapshot);
+        return replica;
+    }
+
+    /**
+     * Creates this replica's copy of every entity of the snapshot that has
+     * none yet. {@link #restoreSnapshot(GameSnapshot)} creates missing copies
+     * itself, from the entities of the source maze, so a replica restored on
+     * another thread than the one updating its source (see
+     * {@link com.buaisociety.pacman.GameFrames}) must have its copies created
+     * here first, on the updating thread.
+     *
+     * @param snapshot A snapshot saved from this replica's source maze.
+     * @throws IllegalArgumentException If the snapshot was saved from another maze.
+     */
+    public void createReplicaEntities(@NotNull GameSnapshot snapshot) {
+        if (snapshot.maze == null || snapshot.maze != replicaSource)
+            throw new IllegalArgumentException("Snapshot was saved from a different maze");
+
+        for (int i = 0; i < snapshot.entityCount; i++) {
+            getReplicaEntity(snapshot.entities[i]);
+        }
+    }
+
+    /**
+     * Returns this replica's copy of the given entity of its source maze,
+     * creating the copy the first time.
+     */
+    private @NotNull Entity getReplicaEntity(@NotNull Entity entity) {
+        Entity replica = replicaEntities.get(entity);
+        if (replica == null) {
+            if (entity instanceof PacmanEntity pacman && replicaPacmanBehavior != null)
+                replica = pacman.createReplica(this, replicaPacmanBehavior);
+            else
+                replica = entity.createReplica(this);
+            replicaEntities.put(entity, replica);
         }
+        return replica;
     }
 
     public void reset() {
@@ -157,30 +609,273 @@ public class Maze implements Disposable {
         return gameManager;
     }
 
+    /**
+     * Returns the shared, immutable data of this maze's level.
+     *
+     * @return the template this maze was created from
+     */
+    public @NotNull MazeTemplate getTemplate() {
+        return template;
+    }
+
+    /**
+     * Returns the walking distances between every pair of passable tiles,
+     * shared by every maze of this level.
+     *
+     * @return the distance table
+     */
+    public @NotNull DistanceTable getDistanceTable() {
+        return template.getDistanceTable();
+    }
+
+    /**
+     * Returns the distance from every tile to the closest pellet (normal or
+     * power pellet), built when first read and kept up to date from then on
+     * as pellets are eaten.
+     *
+     * @return the pellet distance field
+     */
+    public @NotNull TileDistanceField getPelletDistances() {
+        return pelletDistances;
+    }
+
+    /**
+     * Returns the distance from every tile to the closest power pellet, built
+     * when first read and kept up to date from then on as power pellets are
+     * eaten.
+     *
+     * @return the power pellet distance field
+     */
+    public @NotNull TileDistanceField getPowerPelletDistances() {
+        return powerPelletDistances;
+    }
+
+    /**
+     * Returns the ghost predictor of this maze, shared by every behavior that
+     * wants to know where the ghosts are going.
+     *
+     * @return The ghost predictor, predicting {@link GhostPredictor#DEFAULT_HORIZON} ticks.
+     */
+    public @NotNull GhostPredictor getGhostPredictor() {
+        if (ghostPredictor == null)
+            ghostPredictor = new GhostPredictor(this, GhostPredictor.DEFAULT_HORIZON);
+        return ghostPredictor;
+    }
+
+    /**
+     * Returns the ghost occupancy bitmaps of this maze, shared by every ray
+     * sensor that looks for ghosts.
+     *
+     * @return The ghost occupancy.
+     */
+    public @NotNull GhostOccupancy getGhostOccupancy() {
+        if (ghostOccupancy == null)
+            ghostOccupancy = new GhostOccupancy(this);
+        return ghostOccupancy;
+    }
+
     public int getPelletsRemaining() {
         return pelletsRemaining;
     }
 
     public @NotNull PacmanEntity getPacman() {
-        for (Entity entity : entities) {
-            if (entity instanceof PacmanEntity) {
-                return (PacmanEntity) entity;
-            }
-        }
-        throw new IllegalStateException("Pacman not found in maze");
+        if (pacman == null)
+            throw new IllegalStateException("Pacman not found in maze");
+        return pacman;
+    }
+
+    /**
+     * Returns the ghosts in the maze, in the order they were added. The list
+     * cannot be modified.
+     *
+     * @return The ghosts in the maze.
+     */
+    public @NotNull List<GhostEntity> getGhosts() {
+        return ghostsView;
+    }
+
+    /**
+     * Returns the fruit in the maze, or <code>null</code> if there is no fruit.
+     *
+     * @return The fruit, or <code>null</code>.
+     */
+    public @Nullable FruitEntity getFruit() {
+        return fruit;
     }
 
     public void addParticle(@NotNull Particle particle) {
+        // Particles are only ever drawn, so headless games skip them entirely
+        if (gameManager.getConfig().headless)
+            return;
+
         particles.add(particle);
     }
 
     /**
-     * Returns the list of entities in the maze.
+     * Moves every particle of this maze to the given list, to be drawn by
+     * another maze (see {@link #addParticles(List)}). Particles move while
+     * they are drawn, so each particle may only be drawn by 1 maze.
+     *
+     * @param out The list to add the particles to.
+     */
+    public void takeParticles(@NotNull List<Particle> out) {
+        out.addAll(particles);
+        particles.clear();
+    }
+
+    /**
+     * Adds particles taken from another maze with {@link #takeParticles(List)}
+     * to be drawn by this maze. Unlike {@link #addParticle(Particle)}, this
+     * also works for headless mazes, like the replicas that
+     * {@link com.buaisociety.pacman.GameFrames} draws.
+     *
+     * @param particles The particles to draw.
+     */
+    public void addParticles(@NotNull List<Particle> particles) {
+        this.particles.addAll(particles);
+    }
+
+    /**
+     * Returns the sprite sheet used for bonus points particles, creating it on
+     * first use.
+     *
+     * @return the bonus points sprite sheet
+     */
+    public @NotNull GrayscaleSpriteSheet getBonusPointsSprite() {
+        if (bonusPointsSprite == null)
+            bonusPointsSprite = new GrayscaleSpriteSheet("sprites/bonus-points-sprite.png", new Vector2i(8 * 4, 8 * 2));
+        return bonusPointsSprite;
+    }
+
+    /**
+     * Returns the list of entities in the maze. The list cannot be modified;
+     * use {@link #addEntity(Entity)} to add entities, so the maze can keep
+     * track of which tile each entity is on.
      *
      * @return The list of entities in the maze.
      */
     public @NotNull List<Entity> getEntities() {
-        return entities;
+        return entitiesView;
+    }
+
+    /**
+     * Adds the given entity to the maze.
+     *
+     * @param entity The entity to add.
+     */
+    public void addEntity(@NotNull Entity entity) {
+        entities.add(entity);
+        entity.setTracked(true);
+        modCount++;
+        entityHash ^= entity.getStateKey();
+        updateEntityCount(entity.getType(), entity.tileX(), entity.tileY(), 1);
+        entityCounts[entity.getType().ordinal()]++;
+
+        if (entity instanceof PacmanEntity pacman) {
+            if (this.pacman == null)
+                this.pacman = pacman;
+        } else if (entity instanceof GhostEntity ghost) {
+            ghosts.add(ghost);
+        } else if (entity instanceof FruitEntity fruit) {
+            this.fruit = fruit;
+        }
+    }
+
+    /**
+     * Returns true if at least 1 entity of the given type is on the given
+     * tile. This is a single array lookup, so it is cheap enough to use as a
+     * search predicate.
+     *
+     * @param x    The x-coordinate of the tile.
+     * @param y    The y-coordinate of the tile.
+     * @param type The type of entity to look for.
+     * @return true if the tile contains an entity of the given type.
+     */
+    public boolean hasEntity(int x, int y, @NotNull EntityType type) {
+        return countEntities(x, y, type) > 0;
+    }
+
+    /**
+     * Returns the number of entities of the given type on the given tile.
+     *
+     * @param x    The x-coordinate of the tile.
+     * @param y    The y-coordinate of the tile.
+     * @param type The type of entity to count.
+     * @return The number of entities of the given type on the tile.
+     */
+    public int countEntities(int x, int y, @NotNull EntityType type) {
+        return tileEntityCounts[entityCountIndex(type, x, y)];
+    }
+
+    /**
+     * Returns the number of entities of the given type in the maze.
+     *
+     * @param type The type of entity to count.
+     * @return The number of entities of the given type.
+     */
+    public int countEntities(@NotNull EntityType type) {
+        return entityCounts[type.ordinal()];
+    }
+
+    /**
+     * Called by {@link Entity#setPosition(Vector2dc)} when an entity moves to
+     * a different tile.
+     *
+     * @param entity The entity that moved, already at its new position.
+     * @param fromX  The x-coordinate of the tile the entity moved from.
+     * @param fromY  The y-coordinate of the tile the entity moved from.
+     */
+    public void onEntityMove(@NotNull Entity entity, int fromX, int fromY) {
+        // Entities set their position before they are added to the maze
+        if (!entity.isTracked())
+            return;
+
+        updateEntityCount(entity.getType(), fromX, fromY, -1);
+        updateEntityCount(entity.getType(), entity.tileX(), entity.tileY(), 1);
+    }
+
+    /**
+     * Called by an entity when its {@link Entity#getStateKey() Zobrist key}
+     * changes.
+     *
+     * @param entity The entity that changed.
+     * @param delta  The old key XOR the new key.
+     */
+    public void onEntityStateChange(@NotNull Entity entity, long delta) {
+        // Entities change before they are added to the maze
+        if (!entity.isTracked())
+            return;
+
+        entityHash ^= delta;
+    }
+
+    /**
+     * Forgets an entity that was just removed from the entities list.
+     */
+    private void untrackEntity(@NotNull Entity entity) {
+        entity.setTracked(false);
+        modCount++;
+        entityHash ^= entity.getStateKey();
+        updateEntityCount(entity.getType(), entity.tileX(), entity.tileY(), -1);
+        entityCounts[entity.getType().ordinal()]--;
+
+        if (entity == pacman) {
+            pacman = null;
+        } else if (entity instanceof GhostEntity ghost) {
+            ghosts.remove(ghost);
+        } else if (entity == fruit) {
+            fruit = null;
+        }
+    }
+
+    private void updateEntityCount(@NotNull EntityType type, int x, int y, int delta) {
+        tileEntityCounts[entityCountIndex(type, x, y)] += delta;
+    }
+
+    private int entityCountIndex(@NotNull EntityType type, int x, int y) {
+        int width = tileDimensions.x;
+        int height = tileDimensions.y;
+        return (type.ordinal() * height + Math.floorMod(y, height)) * width + Math.floorMod(x, width);
     }
 
     /**
@@ -229,9 +924,32 @@ public class Maze implements Disposable {
      * @return The tile at the given position.
      */
     public final @NotNull Tile getTile(int x, int y) {
-        y = (y + tileDimensions.y) % tileDimensions.y;
-        x = (x + tileDimensions.x) % tileDimensions.x;
-        return tiles[y][x];
+        return getTile(getTileIndex(x, y));
+    }
+
+    /**
+     * Returns the tile at the given index. Tiles are created the first time
+     * any tile is requested, so code that only needs the state of a tile
+     * should prefer {@link #getTileState(int)}.
+     *
+     * @param index The index of the tile.
+     * @return The tile at the given index.
+     */
+    public final @NotNull Tile getTile(int index) {
+        Tile[] views = tileViews;
+        if (views == null)
+            views = createTileViews();
+        return views[index];
+    }
+
+    // Every tile is created at once, keeping getTile(int) branch-free for searches
+    private @NotNull Tile[] createTileViews() {
+        Tile[] views = new Tile[tileStates.length];
+        for (int index = 0; index < views.length; index++) {
+            views[index] = new Tile(this, index);
+        }
+        tileViews = views;
+        return views;
     }
 
     /**
@@ -244,9 +962,29 @@ public class Maze implements Disposable {
      * @return The wrapped position.
      */
     public final @NotNull Vector2d getWrappedPosition(@NotNull Vector2d position) {
-        double y = (position.y + pixelDimensions.y) % pixelDimensions.y;
-        double x = (position.x + pixelDimensions.x) % pixelDimensions.x;
-        return new Vector2d(x, y);
+        return new Vector2d(wrapPixelX(position.x), wrapPixelY(position.y));
+    }
+
+    /**
+     * Wraps the given x-coordinate (in pixels) to the width of the maze. See
+     * {@link #getWrappedPosition(Vector2d)}.
+     *
+     * @param x The x-coordinate to wrap.
+     * @return The wrapped x-coordinate.
+     */
+    public final double wrapPixelX(double x) {
+        return (x + pixelDimensions.x) % pixelDimensions.x;
+    }
+
+    /**
+     * Wraps the given y-coordinate (in pixels) to the height of the maze. See
+     * {@link #getWrappedPosition(Vector2d)}.
+     *
+     * @param y The y-coordinate to wrap.
+     * @return The wrapped y-coordinate.
+     */
+    public final double wrapPixelY(double y) {
+        return (y + pixelDimensions.y) % pixelDimensions.y;
     }
 
     /**
@@ -309,28 +1047,36 @@ public class Maze implements Disposable {
             default -> 8;
         };
 
+        // As more ghosts are eaten, the bonus points are worth more
+        localNumGhostsEaten++;
+
+        // Particles are skipped by headless games, so don't even create them
+        if (gameManager.getConfig().headless)
+            return;
+
         Color[] colors = new Color[]{Color.CLEAR, Color.CYAN};
         Vector2i spriteTile = new Vector2i(clampedScoreIndex, 0);
-        Particle particle = new Particle(bonusPointsSprite, spriteTile, colors);
+        Particle particle = new Particle(this::getBonusPointsSprite, spriteTile, colors);
         particle.setPosition(ghost.getPosition());
         particle.setVelocity(new Vector2d(0, 3));
         particle.setVelocityFor(5);
         particle.setLiveFor(40);
-        particles.add(particle);
-
-        // As more ghosts are eaten, the bonus points are worth more
-        localNumGhostsEaten++;
+        addParticle(particle);
     }
 
     public @NotNull TileState eatPellet(@NotNull PacmanEntity pacman, @NotNull Tile tile) {
-        TileState state = tile.getState();
+        return eatPellet(pacman, tile.getIndex());
+    }
+
+    public @NotNull TileState eatPellet(@NotNull PacmanEntity pacman, int index) {
+        TileState state = getTileState(index);
 
         // Normal pellets are eaten by Pacman, and the score is increased. Normal
         // pellets also release ghosts when a certain number of them are eaten.
         if (state == TileState.PELLET) {
             gameManager.incrementScore(10);
             pelletsRemaining--;
-            tile.setState(TileState.SPACE);
+            setTileState(index, TileState.SPACE);
 
             // Ghosts are released when a certain number of pellets are eaten. The
             // first 2 ghosts (blinky and pinky) are always released. Then each
@@ -341,17 +1087,11 @@ public class Maze implements Disposable {
             // Allow a handicap to delay the speed changes per-level
             // makes the game easier
             level = Math.max(1, level - gameManager.getConfig().handicap);
-            int[] bounds = switch (level) {
-                case 1 -> new int[]{0, 0, 30, 60};
-                case 2 -> new int[]{0, 0, 0, 50};
-                default -> new int[]{0, 0, 0, 0};
-            };
+            int[] bounds = GHOST_RELEASE_BOUNDS[Math.min(level, GHOST_RELEASE_BOUNDS.length) - 1];
 
             int ghostIndex = 0;
-            for (Entity temp : entities) {
-                if (!(temp instanceof GhostEntity ghost))
-                    continue;
-
+            for (int i = 0; i < ghosts.size(); i++) {
+                GhostEntity ghost = ghosts.get(i);
                 int bound = bounds[Math.min(ghostIndex, bounds.length - 1)];
                 ghostIndex++;
                 if (ghost.isReleased())
@@ -368,7 +1108,7 @@ public class Maze implements Disposable {
             localNumGhostsEaten = 0;
             gameManager.incrementScore(50);
             pelletsRemaining--;
-            tile.setState(TileState.SPACE);
+            setTileState(index, TileState.SPACE);
 
             // Allow a handicap to delay the speed changes per-level
             // makes the game easier
@@ -380,10 +1120,8 @@ public class Maze implements Disposable {
                 levelIndex = LEVEL_FRIGHT_TIMES.length - 1;
 
             frightenedTimer = LEVEL_FRIGHT_TIMES[levelIndex];
-            for (Entity temp : entities) {
-                if (temp instanceof GhostEntity ghost) {
-                    ghost.setState(GhostState.FRIGHTENED);
-                }
+            for (int i = 0; i < ghosts.size(); i++) {
+                ghosts.get(i).setState(GhostState.FRIGHTENED);
             }
             pacman.incrementPowerPelletsEaten();
         } else {
@@ -402,9 +1140,14 @@ public class Maze implements Disposable {
 
     public void spawnFruit() {
         // Remove the first fruit, if there
-        entities.removeIf(entity -> entity instanceof FruitEntity);
+        if (fruit != null) {
+            FruitEntity oldFruit = fruit;
+            entities.remove(oldFruit);
+            untrackEntity(oldFruit);
+        }
         FruitEntity.Config config = new FruitEntity.Config();
         config.spawnPixel = new Vector2d(fruitSpawnPixel);
+        config.ticksLeft = gameManager.getRandom().nextInt(9 * 60, 10 * 60);
 
         // Fire the event to allow the fruit to be customized
         EntityPreSpawnEvent event = new EntityPreSpawnEvent(this, EntityType.FRUIT, config);
@@ -418,7 +1161,7 @@ public class Maze implements Disposable {
         if (spawnEvent.isCancelled())
             return;
 
-        entities.add(fruit);
+        addEntity(fruit);
     }
 
     public void update() {
@@ -435,6 +1178,92 @@ public class Maze implements Disposable {
         if (getTerminalReason() != null)
             return;
 
+        updateGhostPhase();
+
+        // Must be indexed to allow modification of entities list
+        for (int i = 0; i < entities.size(); i++) {
+            Entity entity = entities.get(i);
+            entity.update();
+        }
+
+        // Remove dead ones. Nothing is removed on most ticks, so only compact
+        // the list once we find the first dead entity. The survivors keep their
+        // order, since the update order decides who wins a collision.
+        int kept = 0;
+        for (int i = 0; i < entities.size(); i++) {
+            Entity entity = entities.get(i);
+            if (entity.isRemove()) {
+                EntityRemoveEvent event = new EntityRemoveEvent(entity);
+                gameManager.getEvents().fireEvent(event);
+                if (!event.isCancelled()) {
+                    untrackEntity(entity);
+                    continue;
+                }
+            }
+
+            if (kept != i)
+                entities.set(kept, entity);
+            kept++;
+        }
+        while (entities.size() > kept) {
+            entities.remove(entities.size() - 1);
+        }
+    }
+
+    /**
+     * Returns the number of upcoming ticks in which {@link #update()} only
+     * counts down a freeze: the start of a level, or eating a ghost.
+     *
+     * @return the number of frozen ticks left
+     */
+    public int getFrozenTicks() {
+        return freezeTicks + gameStartTicks;
+    }
+
+    /**
+     * Advances the game through every frozen tick at once, leaving it in
+     * exactly the state {@link #getFrozenTicks()} calls to {@link #update()}
+     * would. Nothing but the tick counters changes while the game is frozen
+     * (entities, timers and the ghost phase all wait), so training can skip
+     * these ticks instead of simulating them 1 by 1.
+     *
+     * @return the number of ticks skipped
+     */
+    public int skipFrozenTicks() {
+        int skipped = freezeTicks + gameStartTicks;
+        ticks += skipped;
+        freezeTicks = 0;
+        gameStartTicks = 0;
+        return skipped;
+    }
+
+    /**
+     * Advances the game by 1 tick like {@link #update()}, but only moves the
+     * ghosts: pacman and the fruit stand still, and the game goes on even
+     * after pacman is caught. Used to predict the ghosts, see {@link GhostPredictor}.
+     */
+    public void stepGhosts() {
+        ticks++;
+        if (freezeTicks > 0) {
+            freezeTicks--;
+            return;
+        }
+        if (gameStartTicks > 0) {
+            gameStartTicks--;
+            return;
+        }
+
+        updateGhostPhase();
+        for (int i = 0; i < ghosts.size(); i++) {
+            ghosts.get(i).update();
+        }
+    }
+
+    /**
+     * Counts down the frightened timer and switches the ghosts between chase
+     * and scatter mode.
+     */
+    private void updateGhostPhase() {
         if (frightenedTimer > 0) {
             frightenedTimer--;
         }
@@ -454,48 +1283,47 @@ public class Maze implements Disposable {
 
             localChaseCounter = LEVEL_STATES[levelIndex][ghostChaseIndex++];
 
-            // Fire an event to allow the chase/scatter times to be customized
-            GlobalBehaviorEvent event = new GlobalBehaviorEvent(this, isGhostChase, localChaseCounter);
-            gameManager.getEvents().fireEvent(event);
-            isGhostChase = event.isChaseBehavior();
-            localChaseCounter = event.getTimeLeft();
-        }
-
-        // Must be indexed to allow modification of entities list
-        for (int i = 0; i < entities.size(); i++) {
-            Entity entity = entities.get(i);
-            entity.update();
-        }
-
-        // Remove dead ones
-        Iterator<Entity> iterator = entities.iterator();
-        while (iterator.hasNext()) {
-            Entity entity = iterator.next();
-            if (entity.isRemove()) {
-                EntityRemoveEvent event = new EntityRemoveEvent(entity);
-                gameManager.getEvents().fireEvent(event);
-                if (event.isCancelled())
-                    continue;
-
-                iterator.remove();
+            // Fire an event to allow the chase/scatter times to be customized. The
+            // event is skipped when nothing listens, so that ticks never allocate
+            EventSystem events = gameManager.getEvents();
+            if (events.hasListeners(GlobalBehaviorEvent.class)) {
+                GlobalBehaviorEvent event = events.fireEvent(new GlobalBehaviorEvent(this, isGhostChase, localChaseCounter));
+                isGhostChase = event.isChaseBehavior();
+                localChaseCounter = event.getTimeLeft();
             }
         }
     }
 
+    /**
+     * Creates the sprites used to draw the maze. Called on the first render, so
+     * that mazes can be simulated without any graphics.
+     */
+    private void loadSprites() {
+        levelSprite = new Sprite(AssetRegistry.acquireTexture(levelSpritePath));
+        pelletSprite = new GrayscaleSpriteSheet("sprites/pellet.png", 8);
+        pelletSprite.setColors(Color.CLEAR, new Color(0xffb897ff));
+        powerPelletSprite = new GrayscaleSpriteSheet("sprites/power-pellet.png", 8);
+        powerPelletSprite.setColors(Color.CLEAR, new Color(0xffb897ff));
+        fruitSprite = new CutoutSpriteSheet("sprites/fruit-sprite.png", 16);
+    }
+
     public void render(@NotNull SpriteBatch batch) {
+        if (levelSprite == null)
+            loadSprites();
+
         batch.draw(levelSprite, 0, 0);
 
         // Power pellets should flicker on and off
         boolean flicker = ticks % 20 < 10;
 
-        for (int y = 0; y < tiles.length; y++) {
-            for (int x = 0; x < tiles[y].length; x++) {
-                Tile tile = tiles[y][x];
-                if (tile.getState() == TileState.PELLET) {
-                    pelletSprite.render(batch, x * TILE_SIZE, y * TILE_SIZE);
-                } else if (tile.getState() == TileState.POWER_PELLET && flicker) {
-                    powerPelletSprite.render(batch, x * TILE_SIZE, y * TILE_SIZE);
-                }
+        int width = tileDimensions.x;
+        for (int index = 0; index < tileStates.length; index++) {
+            int x = index % width;
+            int y = index / width;
+            if (tileStates[index] == TileState.PELLET.ordinal()) {
+                pelletSprite.render(batch, x * TILE_SIZE, y * TILE_SIZE);
+            } else if (tileStates[index] == TileState.POWER_PELLET.ordinal() && flicker) {
+                powerPelletSprite.render(batch, x * TILE_SIZE, y * TILE_SIZE);
             }
         }
 
@@ -526,23 +1354,44 @@ public class Maze implements Disposable {
         for (Entity entity : entities) {
             entity.dispose();
         }
-        levelSprite.getTexture().dispose();
-        pelletSprite.dispose();
-        powerPelletSprite.dispose();
-        bonusPointsSprite.dispose();
-        fruitSprite.dispose();
+        if (levelSprite != null)
+            AssetRegistry.releaseTexture(levelSpritePath);
+        if (pelletSprite != null)
+            pelletSprite.dispose();
+        if (powerPelletSprite != null)
+            powerPelletSprite.dispose();
+        if (bonusPointsSprite != null)
+            bonusPointsSprite.dispose();
+        if (fruitSprite != null)
+            fruitSprite.dispose();
     }
 
+    /**
+     * Returns every tile of the maze, indexed by <code>[y][x]</code>. This
+     * creates every tile, so prefer {@link #getTile(int, int)} or the
+     * index-based methods.
+     *
+     * @return the tiles of the maze
+     */
     public Tile[][] getTiles() {
+        if (tiles == null) {
+            Tile[][] tiles = new Tile[tileDimensions.y][tileDimensions.x];
+            for (int y = 0; y < tiles.length; y++) {
+                for (int x = 0; x < tiles[y].length; x++) {
+                    tiles[y][x] = getTile(y * tileDimensions.x + x);
+                }
+            }
+            this.tiles = tiles;
+        }
         return tiles;
     }
 
     public int getWidth() {
-        return tiles[0].length;
+        return tileDimensions.x;
     }
     
     public int getHeight() {
-        return tiles.length;
+        return tileDimensions.y;
     }
 
     
@@ -0,0 +1,398 @@
+package com.buaisociety.pacman.maze;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.buaisociety.pacman.entity.Direction;
+import com.buaisociety.pacman.entity.GhostEntity;
+import com.buaisociety.pacman.entity.behavior.Behavior;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.joml.Vector2i;
+import org.joml.Vector2ic;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The parsed, immutable data of a level: the initial tile states, the spawn
+ * positions and the ghost configs.
+ *
+ * <p>Parsing a level means reading json files and decoding the maze image, so
+ * templates are parsed once per level name and shared by every game (and every
+ * thread). Each {@link Maze} only copies the tile states, since those change
+ * as pacman eats pellets.
+ */
+public final class MazeTemplate {
+
+    private static final @NotNull Map<String, MazeTemplate> TEMPLATES = new ConcurrentHashMap<>();
+    private static final @NotNull TileState[] TILE_STATES = TileState.values();
+    private static final @NotNull Direction[] DIRECTIONS = Direction.values();
+
+    private final @NotNull String name;
+    private final @NotNull String levelSpritePath;
+    private final int width;
+    private final int height;
+    private final byte[] tileStates;  // [y * width + x], TileState ordinals
+    private final int[] neighbors;  // [index * 4 + direction ordinal], wrapping around the edges
+    private final long[] pellets;  // bit i is set when tile i starts as a pellet
+    private final long[] powerPellets;  // bit i is set when tile i starts as a power pellet
+    private final @NotNull Vector2i pacmanSpawnPixel;
+    private final @NotNull Vector2i ghostRevivePixel;
+    private final @NotNull Vector2i fruitSpawnPixel;
+    private final @NotNull List<GhostTemplate> ghosts;
+    private volatile @Nullable DistanceTable distanceTable;
+
+    private MazeTemplate(@NotNull String name) {
+        this.name = name;
+        this.levelSpritePath = "mazes/" + name + "/render.png";
+
+        ObjectMapper mapper = new ObjectMapper();
+        JsonNode mazeConfigJson;
+        try {
+            mazeConfigJson = mapper.readTree(Gdx.files.internal("mazes/" + name + "/config.json").readString());
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to load maze config for " + name, e);
+        }
+
+        TileState[][] tiles = parseTiles("mazes/" + name + "/maze.png");
+        this.width = tiles[0].length;
+        this.height = tiles.length;
+        this.tileStates = new byte[width * height];
+        this.neighbors = new int[width * height * DIRECTIONS.length];
+        this.pellets = new long[wordCount(width * height)];
+        this.powerPellets = new long[wordCount(width * height)];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int index = y * width + x;
+                tileStates[index] = (byte) tiles[y][x].ordinal();
+                if (tiles[y][x] == TileState.PELLET)
+                    pellets[index >>> 6] |= 1L << index;
+                else if (tiles[y][x] == TileState.POWER_PELLET)
+                    powerPellets[index >>> 6] |= 1L << index;
+                for (Direction direction : DIRECTIONS) {
+                    int neighborX = (x + direction.getDx() + width) % width;
+                    int neighborY = (y + direction.getDy() + height) % height;
+                    neighbors[index * DIRECTIONS.length + direction.ordinal()] = neighborY * width + neighborX;
+                }
+            }
+        }
+        this.pacmanSpawnPixel = parseVector(mazeConfigJson.get("pacman_spawn_position"));
+        this.ghostRevivePixel = parseVector(mazeConfigJson.get("ghost_revive_position"));
+        this.fruitSpawnPixel = parseVector(mazeConfigJson.get("fruit_spawn_position"));
+
+        List<GhostTemplate> ghosts = new ArrayList<>();
+        for (JsonNode ghostNode : mazeConfigJson.get("ghosts")) {
+            ghosts.add(new GhostTemplate(mapper, ghostNode));
+        }
+        this.ghosts = Collections.unmodifiableList(ghosts);
+    }
+
+    /**
+     * Returns the template for the given level name, parsing it the first
+     * time it is requested.
+     *
+     * @param name the name of the level, e.g. <code>"9"</code>
+     * @return the template for the level
+     */
+    public static @NotNull MazeTemplate get(@NotNull String name) {
+        return TEMPLATES.computeIfAbsent(name, MazeTemplate::new);
+    }
+
+    /**
+     * Returns the name of the level.
+     *
+     * @return the name of the level
+     */
+    public @NotNull String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the path to the texture that draws the walls of the level.
+     *
+     * @return the path to the level sprite
+     */
+    public @NotNull String getLevelSpritePath() {
+        return levelSpritePath;
+    }
+
+    /**
+     * Returns the width of the maze, in tiles.
+     *
+     * @return the width of the maze
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Returns the height of the maze, in tiles.
+     *
+     * @return the height of the maze
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns the initial state of the given tile.
+     *
+     * @param x the x-coordinate of the tile
+     * @param y the y-coordinate of the tile
+     * @return the initial state of the tile
+     */
+    public @NotNull TileState getTileState(int x, int y) {
+        return TILE_STATES[tileStates[y * width + x]];
+    }
+
+    /**
+     * Returns a new copy of the initial tile states, as {@link TileState}
+     * ordinals indexed by <code>y * width + x</code>.
+     *
+     * @return a copy of the initial tile states
+     */
+    byte[] copyTileStates() {
+        return tileStates.clone();
+    }
+
+    /**
+     * Copies the initial tile states into the given array, which must have
+     * a length of at least <code>width * height</code>.
+     *
+     * @param tileStates the array to fill
+     */
+    void copyTileStates(byte[] tileStates) {
+        System.arraycopy(this.tileStates, 0, tileStates, 0, this.tileStates.length);
+    }
+
+    /**
+     * Returns the initial pellets as a bitset, where bit <code>i</code>
+     * ({@code pellets[i >>> 6] & (1L << i)}) is set when tile
+     * <code>i</code> starts as a {@link TileState#PELLET}. The array is shared
+     * and must not be modified.
+     *
+     * @return the initial pellets
+     */
+    long[] getPellets() {
+        return pellets;
+    }
+
+    /**
+     * Returns the initial power pellets as a bitset, like {@link #getPellets()}.
+     * The array is shared and must not be modified.
+     *
+     * @return the initial power pellets
+     */
+    long[] getPowerPellets() {
+        return powerPellets;
+    }
+
+    /**
+     * Returns the number of <code>long</code> words needed for a bitset of
+     * the given number of tiles.
+     *
+     * @param tiles the number of tiles
+     * @return the number of words
+     */
+    static int wordCount(int tiles) {
+        return (tiles + 63) >>> 6;
+    }
+
+    /**
+     * Returns the index of each tile's neighbor in each direction, indexed by
+     * <code>index * 4 + direction.ordinal()</code>. Neighbors wrap around the
+     * edges of the maze. Walls never move, so the array is shared by every
+     * maze of this level and must not be modified.
+     *
+     * @return the neighbor indices
+     */
+    int[] getNeighbors() {
+        return neighbors;
+    }
+
+    public @NotNull Vector2ic getPacmanSpawnPixel() {
+        return pacmanSpawnPixel;
+    }
+
+    public @NotNull Vector2ic getGhostRevivePixel() {
+        return ghostRevivePixel;
+    }
+
+    public @NotNull Vector2ic getFruitSpawnPixel() {
+        return fruitSpawnPixel;
+    }
+
+    /**
+     * Returns the ghosts of the level, in spawn order.
+     *
+     * @return the ghosts of the level
+     */
+    public @NotNull List<GhostTemplate> getGhosts() {
+        return ghosts;
+    }
+
+    /**
+     * Returns the walking distances between every pair of passable tiles,
+     * computing them the first time they are requested.
+     *
+     * @return the distance table of this level
+     */
+    public @NotNull DistanceTable getDistanceTable() {
+        DistanceTable distanceTable = this.distanceTable;
+        if (distanceTable == null) {
+            synchronized (this) {
+                distanceTable = this.distanceTable;
+                if (distanceTable == null)
+                    this.distanceTable = distanceTable = new DistanceTable(this);
+            }
+        }
+        return distanceTable;
+    }
+
+    private static @NotNull TileState[][] parseTiles(@NotNull String path) {
+        Pixmap pixmap = new Pixmap(Gdx.files.internal(path));
+        TileState[][] tiles = new TileState[pixmap.getHeight()][pixmap.getWidth()];
+        Color color = new Color();
+        for (int y = 0; y < pixmap.getHeight(); y++) {
+            for (int x = 0; x < pixmap.getWidth(); x++) {
+                int pixel = pixmap.getPixel(x, y);
+                Color.rgba8888ToColor(color, pixel);
+                int red = (int) (color.r * 255);  // grayscale, so r=g=b
+
+                // This is a 4-bit grayscale image, so we can only have 16 colors
+                int normalized = red / (256 / (TileState.values().length - 1));
+                tiles[pixmap.getHeight() - 1 - y][x] = switch (normalized) {
+                    case 0 -> TileState.SPACE;
+                    case 1 -> TileState.TUNNEL;
+                    case 2 -> TileState.PELLET;
+                    case 3 -> TileState.POWER_PELLET;
+                    case 4 -> TileState.GHOST_PEN;
+                    case 5 -> TileState.WALL;
+                    default -> throw new IllegalStateException("Unexpected value: " + normalized);
+                };
+            }
+        }
+
+        pixmap.dispose();
+        return tiles;
+    }
+
+    private static @NotNull Color[] parseColors(@NotNull JsonNode node) {
+        Color[] colors = new Color[node.size()];
+        for (int i = 0; i < colors.length; i++) {
+            JsonNode colorNode = node.get(i);
+            colors[i] = new Color(
+                (float) colorNode.get("r").asDouble(),
+                (float) colorNode.get("g").asDouble(),
+                (float) colorNode.get("b").asDouble(),
+                (float) colorNode.get("a").asDouble()
+            );
+        }
+        return colors;
+    }
+
+    private static @NotNull Vector2i parseVector(@NotNull JsonNode node) {
+        return new Vector2i(node.get("x").asInt(), node.get("y").asInt());
+    }
+
+    private static @NotNull Color[] copyColors(@NotNull Color[] colors) {
+        Color[] copy = new Color[colors.length];
+        for (int i = 0; i < colors.length; i++) {
+            copy[i] = new Color(colors[i]);
+        }
+        return copy;
+    }
+
+    /**
+     * The parsed data of 1 ghost in a level.
+     */
+    public static final class GhostTemplate {
+
+        private final @NotNull String name;
+        private final @NotNull Vector2i spawnPixel;
+        private final @NotNull Direction spawnDirection;
+        private final boolean isReleased;
+        private final @NotNull Vector2i scatterTile;
+        private final boolean isElroy;
+        private final @NotNull Class<? extends Behavior> chaseBehavior;
+        private final @NotNull Color[] colorsAlive;
+        private final @NotNull Color[] colorsFrightened;
+        private final @NotNull Color[] colorsFlash;
+        private final @NotNull Color[] colorsEaten;
+
+        private GhostTemplate(@NotNull ObjectMapper mapper, @NotNull JsonNode ghostNode) {
+            this.name = ghostNode.get("name").asText();  // expect a value like 'ghosts/inky.json'
+            this.spawnPixel = parseVector(ghostNode.get("spawn_position"));
+            this.spawnDirection = Direction.valueOf(ghostNode.get("spawn_direction").asText().toUpperCase(Locale.ROOT));
+            this.isReleased = ghostNode.get("is_released").asBoolean();
+            this.scatterTile = parseVector(ghostNode.get("scatter_tile"));
+
+            JsonNode ghostJson;
+            try {
+                ghostJson = mapper.readTree(Gdx.files.internal(name).readString());
+            } catch (Exception e) {
+                throw new RuntimeException("Failed to load ghost config for " + name, e);
+            }
+
+            String behaviorClassPath = ghostJson.get("chase_behavior").asText();
+            this.isElroy = ghostJson.get("is_elroy").asBoolean();
+            try {
+                this.chaseBehavior = Class.forName(behaviorClassPath).asSubclass(Behavior.class);
+            } catch (Exception e) {
+                throw new RuntimeException("Failed to load behavior for " + name, e);
+            }
+
+            JsonNode colorJson = ghostJson.get("colors");
+            this.colorsAlive = parseColors(colorJson.get("alive"));
+            this.colorsFrightened = parseColors(colorJson.get("frightened"));
+            this.colorsFlash = parseColors(colorJson.get("flash"));
+            this.colorsEaten = parseColors(colorJson.get("eaten"));
+        }
+
+        /**
+         * Returns the path to the ghost's json file, e.g. <code>"ghosts/inky.json"</code>.
+         *
+         * @return the path to the ghost's json file
+         */
+        public @NotNull String getName() {
+            return name;
+        }
+
+        /**
+         * Creates a new config for this ghost. Every call returns new objects
+         * (including a new chase behavior), so configs may be freely modified.
+         *
+         * @param ghostRevivePixel the pixel the ghost returns to after being eaten
+         * @return a new ghost config
+         */
+        public @NotNull GhostEntity.Config createConfig(@NotNull Vector2ic ghostRevivePixel) {
+            Behavior behavior;
+            try {
+                behavior = chaseBehavior.getConstructor().newInstance();
+            } catch (Exception e) {
+                throw new RuntimeException("Failed to load behavior for " + name, e);
+            }
+
+            GhostEntity.Config ghostConfig = new GhostEntity.Config();
+            ghostConfig.isElroy = isElroy;
+            ghostConfig.chase = behavior;
+            ghostConfig.scatterTile = new Vector2i(scatterTile);
+            ghostConfig.spawnPixel = new Vector2i(spawnPixel);
+            ghostConfig.spawnDirection = spawnDirection;
+            ghostConfig.spawnReleased = isReleased;
+            ghostConfig.reviveTile = new Vector2i(ghostRevivePixel);
+            ghostConfig.colorsAlive = copyColors(colorsAlive);
+            ghostConfig.colorsFrightened = copyColors(colorsFrightened);
+            ghostConfig.colorsFlash = copyColors(colorsFlash);
+            ghostConfig.colorsEaten = copyColors(colorsEaten);
+            return ghostConfig;
+        }
+    }
+}
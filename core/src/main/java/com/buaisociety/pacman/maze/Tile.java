@@ -5,21 +5,28 @@ import org.jetbrains.annotations.NotNull;
 import org.joml.Vector2i;
 import org.joml.Vector2ic;
 
-import java.util.Objects;
-
 /**
  * Represents a tile in the maze.
+ *
+ * <p>The maze stores its tiles as flat arrays (see {@link Maze#getTileState(int)}),
+ * so a tile is just a view of 1 index of those arrays. Tiles are created the
+ * first time they are requested and cached by the maze, so there is only ever
+ * 1 tile object per position.
  */
 public class Tile {
 
+    private static final TileState[] TILE_STATES = TileState.values();
+
     private final @NotNull Maze maze;
+    private final byte[] tileStates;  // the maze's array, read directly since predicates call getState() on every search step
     private final @NotNull Vector2i position;
-    private @NotNull TileState state;
+    private final int index;
 
-    public Tile(@NotNull Maze maze, @NotNull Vector2i position, @NotNull TileState state) {
+    Tile(@NotNull Maze maze, int index) {
         this.maze = maze;
-        this.position = position;
-        this.state = state;
+        this.tileStates = maze.tileStates;
+        this.position = new Vector2i(index % maze.getWidth(), index / maze.getWidth());
+        this.index = index;
     }
 
     /**
@@ -42,13 +49,23 @@ public class Tile {
         return position;
     }
 
+    /**
+     * Returns the flattened index of this tile, <code>y * width + x</code>.
+     * Indices are cheaper to compare and store than tiles.
+     *
+     * @return the index of this tile
+     */
+    public int getIndex() {
+        return index;
+    }
+
     /**
      * Returns the current contents of this tile.
      *
      * @return the current state of the tile.
      */
     public @NotNull TileState getState() {
-        return state;
+        return TILE_STATES[tileStates[index]];
     }
 
     /**
@@ -61,7 +78,7 @@ public class Tile {
      * @param state the new state of the tile.
      */
     public void setState(@NotNull TileState state) {
-        this.state = state;
+        maze.setTileState(index, state);
     }
 
     /**
@@ -73,9 +90,27 @@ public class Tile {
      * @return the position of the center pixel of this tile
      */
     public @NotNull Vector2i getCenterPixel() {
-        int x = position.x * Maze.TILE_SIZE + Maze.TILE_SIZE / 2 - 1;
-        int y = position.y * Maze.TILE_SIZE + Maze.TILE_SIZE / 2 - 1;
-        return new Vector2i(x, y);
+        return new Vector2i(getCenterPixelX(), getCenterPixelY());
+    }
+
+    /**
+     * Returns the x-coordinate of {@link #getCenterPixel()}, without
+     * allocating a vector.
+     *
+     * @return the x-coordinate of the center pixel of this tile
+     */
+    public int getCenterPixelX() {
+        return position.x * Maze.TILE_SIZE + Maze.TILE_SIZE / 2 - 1;
+    }
+
+    /**
+     * Returns the y-coordinate of {@link #getCenterPixel()}, without
+     * allocating a vector.
+     *
+     * @return the y-coordinate of the center pixel of this tile
+     */
+    public int getCenterPixelY() {
+        return position.y * Maze.TILE_SIZE + Maze.TILE_SIZE / 2 - 1;
     }
 
     /**
@@ -85,7 +120,7 @@ public class Tile {
      * @return the neighbor tile in the given direction
      */
     public @NotNull Tile getNeighbor(@NotNull Direction direction) {
-        return maze.getTile(position.x + direction.getDx(), position.y + direction.getDy());
+        return maze.getTile(maze.getNeighbor(index, direction));
     }
 
     @Override
@@ -93,16 +128,16 @@ public class Tile {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         Tile tile = (Tile) o;
-        return Objects.equals(maze, tile.maze) && Objects.equals(position, tile.position);
+        return maze == tile.maze && index == tile.index;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(maze, position);
+        return 31 * maze.hashCode() + index;
     }
 
     public boolean isWalkable() {
-        return state != TileState.WALL;
+        return getState() != TileState.WALL;
     }
     
 }
@@ -0,0 +1,312 @@
+package com.buaisociety.pacman.maze;
+
+import com.buaisociety.pacman.entity.Direction;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.function.Predicate;
+
+/**
+ * The walking distance (in tiles) from every tile of a maze to the closest
+ * "source" tile, e.g. the closest pellet.
+ *
+ * <p>Instead of searching the maze every tick, the field is kept up to date as
+ * tiles change. When a source disappears (pacman eats a pellet), only the tiles
+ * whose every shortest path went through that source are recomputed, which is
+ * usually a handful of tiles around pacman. Tunnels that wrap around the edges
+ * of the maze are included, just like {@link com.buaisociety.pacman.util.Searcher}.
+ *
+ * <p>Fields are owned and updated by their {@link Maze}; see
+ * {@link Maze#getPelletDistances()} and {@link Maze#getPowerPelletDistances()}.
+ * A field is only built the first time it is read (or {@link #build() built}),
+ * so mazes that never read it never pay for keeping it up to date.
+ */
+public final class TileDistanceField {
+
+    /**
+     * Returned by {@link #getDistance(int, int)} when no source can be reached
+     * from the tile (or when the tile is not passable).
+     */
+    public static final int UNREACHABLE = -1;
+
+    private static final int INFINITY = Integer.MAX_VALUE;
+    private static final Direction[] DIRECTIONS = Direction.values();
+    private static final TileState[] TILE_STATES = TileState.values();
+
+    private final @NotNull Maze maze;
+    private final byte[] tileStates;
+    private final boolean[] isSource;  // [TileState ordinal]
+    private final boolean[] isPassable;  // [TileState ordinal]
+    private final int width;
+    private final int[] distances;  // INFINITY if no source is reachable
+    private boolean built;  // false until first read, and after the tiles are replaced
+
+    // Scratch buffers, reused by every update
+    private final int[] queue;
+    private final int[] seeds;  // distance * size + index, sorted before use
+    private final int[] affected;  // a tile is affected when affected[index] == epoch
+    private int epoch;
+
+    TileDistanceField(@NotNull Maze maze, @NotNull Predicate<TileState> isSource) {
+        this.maze = maze;
+        this.tileStates = maze.tileStates;
+        this.isSource = new boolean[TILE_STATES.length];
+        this.isPassable = new boolean[TILE_STATES.length];
+        for (TileState state : TILE_STATES) {
+            this.isSource[state.ordinal()] = isSource.test(state);
+            this.isPassable[state.ordinal()] = state.isPassable();
+        }
+        this.width = maze.getWidth();
+
+        int size = tileStates.length;
+        this.distances = new int[size];
+        this.queue = new int[size];
+        this.seeds = new int[size];
+        this.affected = new int[size];
+    }
+
+    /**
+     * Builds the field now, unless it is already built. From then on, the
+     * field is kept up to date as tiles change, and it is saved in snapshots
+     * of the maze, so replicas restoring them do not build it again.
+     */
+    public void build() {
+        if (!built)
+            rebuild();
+    }
+
+    /**
+     * Returns the number of tiles between the given tile and the closest
+     * source. Sources have a distance of 0.
+     *
+     * @param x the x-coordinate of the tile
+     * @param y the y-coordinate of the tile
+     * @return the distance in tiles, or {@link #UNREACHABLE}
+     */
+    public int getDistance(int x, int y) {
+        build();
+        int distance = distances[y * width + x];
+        return distance == INFINITY ? UNREACHABLE : distance;
+    }
+
+    /**
+     * Fills <code>out</code> with the directions (relative to
+     * <code>facing</code>) that lead 1 tile closer to the closest source.
+     * Every direction on a shortest path is flagged, so ties between
+     * directions all come back <code>true</code>. When the tile itself is a
+     * source, or no source is reachable, every direction is <code>false</code>.
+     *
+     * @param x      the x-coordinate of the tile
+     * @param y      the y-coordinate of the tile
+     * @param facing the direction considered "forward"
+     * @param out    the array to fill, with a length of at least 4
+     * @return <code>out</code>, as [forward, left, right, behind]
+     */
+    public boolean[] getDirectionsToClosest(int x, int y, @NotNull Direction facing, boolean[] out) {
+        build();
+        Arrays.fill(out, 0, 4, false);
+        int index = y * width + x;
+        int distance = distances[index];
+        if (distance == 0 || distance == INFINITY)
+            return out;
+
+        out[0] = distances[maze.getNeighbor(index, facing)] == distance - 1;
+        out[1] = distances[maze.getNeighbor(index, facing.left())] == distance - 1;
+        out[2] = distances[maze.getNeighbor(index, facing.right())] == distance - 1;
+        out[3] = distances[maze.getNeighbor(index, facing.behind())] == distance - 1;
+        return out;
+    }
+
+    /**
+     * Copies the distance of every tile into the given array, for
+     * {@link Maze#saveSnapshot(GameSnapshot)}.
+     *
+     * @param out the array to fill, with a length of at least the number of tiles
+     * @return false if the field is not built, in which case nothing is copied
+     */
+    boolean copyDistances(int[] out) {
+        if (!built)
+            return false;
+        System.arraycopy(distances, 0, out, 0, distances.length);
+        return true;
+    }
+
+    /**
+     * Replaces every distance with ones saved by {@link #copyDistances(int[])}.
+     * The saved distances must match the current tile states.
+     *
+     * @param saved the saved distances
+     * @param built what {@link #copyDistances(int[])} returned, false to build the field again when next read
+     */
+    void setDistances(int[] saved, boolean built) {
+        this.built = built;
+        if (built)
+            System.arraycopy(saved, 0, distances, 0, distances.length);
+    }
+
+    /**
+     * Forgets every distance, after every tile of the maze was replaced. The
+     * field is built again when next read.
+     */
+    void invalidate() {
+        built = false;
+    }
+
+    /**
+     * Recomputes the entire field with 1 breadth-first search from every
+     * source.
+     */
+    private void rebuild() {
+        built = true;
+        Arrays.fill(distances, INFINITY);
+        int tail = 0;
+        for (int index = 0; index < tileStates.length; index++) {
+            if (isSource[tileStates[index]]) {
+                distances[index] = 0;
+                queue[tail++] = index;
+            }
+        }
+        relax(0, tail);
+    }
+
+    /**
+     * Updates the field after the state of a tile changed.
+     *
+     * @param index    the index of the tile that changed, already in its new state
+     * @param previous the state of the tile before the change
+     */
+    void update(int index, @NotNull TileState previous) {
+        if (!built)
+            return;  // built from the current tiles when first read
+
+        boolean wasSource = this.isSource[previous.ordinal()];
+        boolean isSource = this.isSource[tileStates[index]];
+        if (wasSource == isSource)
+            return;
+
+        if (isSource) {
+            distances[index] = 0;
+            queue[0] = index;
+            relax(0, 1);
+        } else {
+            removeSource(index);
+        }
+    }
+
+    /**
+     * Distances only ever grow when a source is removed, and only for the
+     * tiles whose shortest paths all went through the removed source. Those
+     * tiles are found by walking "down" the field from the source (a tile is
+     * affected when every neighbor 1 step closer is affected), then they are
+     * recomputed from the unaffected tiles around them.
+     */
+    private void removeSource(int source) {
+        int epoch = nextEpoch();
+
+        // 1. Find the affected tiles. The queue is in order of distance, so
+        // every affected tile of a distance is marked before any tile of that
+        // distance is popped.
+        int head = 0;
+        int tail = 0;
+        affected[source] = epoch;
+        queue[tail++] = source;
+        while (head < tail) {
+            int index = queue[head++];
+            int distance = distances[index];
+            for (Direction direction : DIRECTIONS) {
+                int neighbor = maze.getNeighbor(index, direction);
+                if (affected[neighbor] != epoch && distances[neighbor] == distance + 1 && !hasUnaffectedParent(neighbor, epoch)) {
+                    affected[neighbor] = epoch;
+                    queue[tail++] = neighbor;
+                }
+            }
+        }
+
+        // 2. Each affected tile can be reached through its unaffected neighbors,
+        // whose distances are still correct
+        int size = tileStates.length;
+        int seedCount = 0;
+        for (int i = 0; i < tail; i++) {
+            int index = queue[i];
+            int best = INFINITY;
+            for (Direction direction : DIRECTIONS) {
+                int neighbor = maze.getNeighbor(index, direction);
+                if (affected[neighbor] != epoch && distances[neighbor] != INFINITY)
+                    best = Math.min(best, distances[neighbor] + 1);
+            }
+            if (best != INFINITY)
+                seeds[seedCount++] = best * size + index;
+        }
+        for (int i = 0; i < tail; i++) {
+            distances[queue[i]] = INFINITY;
+        }
+        Arrays.sort(seeds, 0, seedCount);
+
+        // 3. Breadth-first search from the seeds. Seeds start at different
+        // distances, so they are merged into the queue in order of distance.
+        head = 0;
+        tail = 0;
+        int nextSeed = 0;
+        while (head < tail || nextSeed < seedCount) {
+            int index;
+            if (nextSeed < seedCount && (head == tail || seeds[nextSeed] / size <= distances[queue[head]])) {
+                int seed = seeds[nextSeed++];
+                index = seed % size;
+                if (distances[index] <= seed / size)
+                    continue;
+                distances[index] = seed / size;
+            } else {
+                index = queue[head++];
+            }
+
+            int distance = distances[index] + 1;
+            for (Direction direction : DIRECTIONS) {
+                int neighbor = maze.getNeighbor(index, direction);
+                if (distances[neighbor] > distance && isPassable(neighbor)) {
+                    distances[neighbor] = distance;
+                    queue[tail++] = neighbor;
+                }
+            }
+        }
+    }
+
+    private boolean hasUnaffectedParent(int index, int epoch) {
+        int parentDistance = distances[index] - 1;
+        for (Direction direction : DIRECTIONS) {
+            int neighbor = maze.getNeighbor(index, direction);
+            if (distances[neighbor] == parentDistance && affected[neighbor] != epoch)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Breadth-first search from the tiles in <code>queue[head..tail)</code>,
+     * lowering the distance of every tile that can be reached faster.
+     */
+    private void relax(int head, int tail) {
+        while (head < tail) {
+            int index = queue[head++];
+            int distance = distances[index] + 1;
+            for (Direction direction : DIRECTIONS) {
+                int neighbor = maze.getNeighbor(index, direction);
+                if (distances[neighbor] > distance && isPassable(neighbor)) {
+                    distances[neighbor] = distance;
+                    queue[tail++] = neighbor;
+                }
+            }
+        }
+    }
+
+    private boolean isPassable(int index) {
+        return isPassable[tileStates[index]];
+    }
+
+    private int nextEpoch() {
+        if (++epoch == Integer.MAX_VALUE) {
+            Arrays.fill(affected, 0);
+            epoch = 1;
+        }
+        return epoch;
+    }
+}
@@ -0,0 +1,114 @@
+package com.buaisociety.pacman.sprite;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Shares textures and shaders between every sprite sheet, so each asset is
+ * only loaded (and uploaded to the GPU) once, no matter how many games are
+ * drawing it.
+ *
+ * <p>Assets are reference counted. Every call to an <code>acquire</code>
+ * method must be matched by a call to the matching <code>release</code>
+ * method, and the asset is disposed once nothing is using it anymore.
+ */
+public final class AssetRegistry {
+
+    private static final @NotNull Map<String, Entry<Texture>> TEXTURES = new HashMap<>();
+    private static final @NotNull Map<String, Entry<ShaderProgram>> SHADERS = new HashMap<>();
+
+    private AssetRegistry() {
+    }
+
+    /**
+     * Returns the texture at the given internal path, loading it if no one
+     * else is using it.
+     *
+     * @param path the internal path to the texture, e.g. <code>"sprites/pellet.png"</code>
+     * @return the shared texture
+     */
+    public static synchronized @NotNull Texture acquireTexture(@NotNull String path) {
+        Entry<Texture> entry = TEXTURES.get(path);
+        if (entry == null) {
+            entry = new Entry<>(new Texture(Gdx.files.internal(path)));
+            TEXTURES.put(path, entry);
+        }
+
+        entry.references++;
+        return entry.asset;
+    }
+
+    /**
+     * Releases a texture acquired by {@link #acquireTexture(String)}.
+     *
+     * @param path the internal path to the texture
+     */
+    public static synchronized void releaseTexture(@NotNull String path) {
+        Entry<Texture> entry = TEXTURES.get(path);
+        if (entry == null)
+            throw new IllegalStateException("Texture " + path + " was released more times than it was acquired");
+
+        if (--entry.references == 0) {
+            TEXTURES.remove(path);
+            entry.asset.dispose();
+        }
+    }
+
+    /**
+     * Returns the shader made from the given internal paths, compiling it if
+     * no one else is using it.
+     *
+     * @param vertexPath   the internal path to the vertex shader
+     * @param fragmentPath the internal path to the fragment shader
+     * @return the shared shader
+     */
+    public static synchronized @NotNull ShaderProgram acquireShader(@NotNull String vertexPath, @NotNull String fragmentPath) {
+        String key = vertexPath + "|" + fragmentPath;
+        Entry<ShaderProgram> entry = SHADERS.get(key);
+        if (entry == null) {
+            ShaderProgram.pedantic = false;
+            ShaderProgram shader = new ShaderProgram(Gdx.files.internal(vertexPath), Gdx.files.internal(fragmentPath));
+            if (!shader.isCompiled()) {
+                throw new RuntimeException("Shader compile error: " + shader.getLog());
+            }
+
+            entry = new Entry<>(shader);
+            SHADERS.put(key, entry);
+        }
+
+        entry.references++;
+        return entry.asset;
+    }
+
+    /**
+     * Releases a shader acquired by {@link #acquireShader(String, String)}.
+     *
+     * @param vertexPath   the internal path to the vertex shader
+     * @param fragmentPath the internal path to the fragment shader
+     */
+    public static synchronized void releaseShader(@NotNull String vertexPath, @NotNull String fragmentPath) {
+        String key = vertexPath + "|" + fragmentPath;
+        Entry<ShaderProgram> entry = SHADERS.get(key);
+        if (entry == null)
+            throw new IllegalStateException("Shader " + key + " was released more times than it was acquired");
+
+        if (--entry.references == 0) {
+            SHADERS.remove(key);
+            entry.asset.dispose();
+        }
+    }
+
+    private static final class Entry<T> {
+        private final @NotNull T asset;
+        private int references;
+
+        private Entry(@NotNull T asset) {
+            this.asset = asset;
+        }
+    }
+}
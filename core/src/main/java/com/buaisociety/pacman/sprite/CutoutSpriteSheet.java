@@ -1,39 +1,66 @@
 package com.buaisociety.pacman.sprite;
 
-import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.badlogic.gdx.graphics.g2d.TextureRegion;
 import com.badlogic.gdx.graphics.glutils.ShaderProgram;
 import com.buaisociety.pacman.util.Disposable;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.joml.Vector2i;
 import org.joml.Vector2ic;
 
 public class CutoutSpriteSheet implements Disposable {
 
+    private static final @NotNull String VERTEX_SHADER = "shaders/grayscale.vert";
+    private static final @NotNull String FRAGMENT_SHADER = "shaders/cutout.frag";
+
     private final @NotNull Vector2i tileSize;
     private final @NotNull Vector2i tiles;
     private final @NotNull Vector2i currentTile;
 
     private final @NotNull TextureRegion currentTileRegion;
-    private final @NotNull ShaderProgram shader;
+    private final @NotNull ShaderProgram shader;  // shared, see AssetRegistry
+    private final @Nullable String texturePath;  // null if this sheet owns its texture
+
+    /**
+     * Creates a sprite sheet from the shared texture at the given internal
+     * path. See {@link AssetRegistry}.
+     *
+     * @param texturePath the internal path to the texture
+     * @param tileSize    the size of each tile, in pixels
+     */
+    public CutoutSpriteSheet(@NotNull String texturePath, int tileSize) {
+        this(texturePath, new Vector2i(tileSize, tileSize));
+    }
+
+    public CutoutSpriteSheet(@NotNull String texturePath, @NotNull Vector2i tileSize) {
+        this(AssetRegistry.acquireTexture(texturePath), texturePath, tileSize);
+    }
 
+    /**
+     * Creates a sprite sheet that owns the given texture, and disposes it
+     * along with the sprite sheet.
+     *
+     * @param texture  the texture, disposed with this sprite sheet
+     * @param tileSize the size of each tile, in pixels
+     */
     public CutoutSpriteSheet(@NotNull Texture texture, int tileSize) {
         this(texture, new Vector2i(tileSize, tileSize));
     }
 
     public CutoutSpriteSheet(@NotNull Texture texture, @NotNull Vector2i tileSize) {
+        this(texture, null, tileSize);
+    }
+
+    private CutoutSpriteSheet(@NotNull Texture texture, @Nullable String texturePath, @NotNull Vector2i tileSize) {
+        this.texturePath = texturePath;
         this.tileSize = tileSize;
         this.tiles = new Vector2i(texture.getWidth() / tileSize.x, texture.getHeight() / tileSize.y);
         this.currentTile = new Vector2i();
         this.currentTileRegion = new TextureRegion(texture);
 
-        ShaderProgram.pedantic = false;
-        shader = new ShaderProgram(Gdx.files.internal("shaders/grayscale.vert"), Gdx.files.internal("shaders/cutout.frag"));
-        if (!shader.isCompiled()) {
-            throw new RuntimeException("Shader compile error: " + shader.getLog());
-        }
+        this.shader = AssetRegistry.acquireShader(VERTEX_SHADER, FRAGMENT_SHADER);
     }
 
     public @NotNull Vector2ic getTileSize() {
@@ -66,7 +93,10 @@ public class CutoutSpriteSheet implements Disposable {
 
     @Override
     public void dispose() {
-        shader.dispose();
-        currentTileRegion.getTexture().dispose();
+        AssetRegistry.releaseShader(VERTEX_SHADER, FRAGMENT_SHADER);
+        if (texturePath != null)
+            AssetRegistry.releaseTexture(texturePath);
+        else
+            currentTileRegion.getTexture().dispose();
     }
 }
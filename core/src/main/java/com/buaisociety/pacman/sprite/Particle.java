@@ -6,6 +6,8 @@ import org.jetbrains.annotations.NotNull;
 import org.joml.Vector2d;
 import org.joml.Vector2i;
 
+import java.util.function.Supplier;
+
 /**
  * Represents a particle that can be rendered on the screen.
  */
@@ -18,11 +20,11 @@ public class Particle {
     private int liveFor = -1;  // ticks before death
 
     // Visual properties
-    private final GrayscaleSpriteSheet spriteSheet;
+    private final Supplier<GrayscaleSpriteSheet> spriteSheet;  // resolved on render, so headless games never load it
     private final Vector2i spriteTile;
     private final Color[] colors;
 
-    public Particle(@NotNull GrayscaleSpriteSheet spriteSheet, @NotNull Vector2i spriteTile, @NotNull Color[] colors) {
+    public Particle(@NotNull Supplier<GrayscaleSpriteSheet> spriteSheet, @NotNull Vector2i spriteTile, @NotNull Color[] colors) {
         this.spriteSheet = spriteSheet;
         this.spriteTile = spriteTile;
         this.colors = colors;
@@ -72,6 +74,7 @@ public class Particle {
         }
 
         liveFor--;
+        GrayscaleSpriteSheet spriteSheet = this.spriteSheet.get();
         spriteSheet.setCurrentTile(spriteTile.x, spriteTile.y);
         spriteSheet.setColors(colors);
 
@@ -46,6 +46,18 @@ public class EventSystem {
         this.listeners.clear();
     }
 
+    /**
+     * Returns true if any listener is registered for the <code>eventClass</code> event. Used internally to skip
+     * creating events that are fired every few ticks when nothing listens to them.
+     *
+     * @param eventClass the class of the event.
+     * @return true if the event has listeners.
+     */
+    public boolean hasListeners(@NotNull Class<? extends Event> eventClass) {
+        Set<EventListener<?>> listeners = this.listeners.get(eventClass);
+        return listeners != null && !listeners.isEmpty();
+    }
+
     /**
      * Used internally to fire an event.
      *
@@ -0,0 +1,80 @@
+package com.buaisociety.pacman.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * A seedable, splittable random number generator (SplitMix64) for the
+ * simulation. Each {@link com.buaisociety.pacman.GameManager} owns 1, so a
+ * game plays out the same way from the same seed no matter which thread runs
+ * it. Use {@link #split()} to hand out independent generators (1 per game,
+ * for example) from a single seed.
+ *
+ * <p>The whole state is 1 <code>long</code>, so a generator can be copied
+ * with {@link #copy()} to replay the same numbers again. Not thread safe.
+ */
+public final class GameRandom implements RandomGenerator {
+
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private long state;
+
+    /**
+     * Creates a new generator. Generators created with the same seed return
+     * the same numbers.
+     *
+     * @param seed the seed
+     */
+    public GameRandom(long seed) {
+        this.state = seed;
+    }
+
+    @Override
+    public long nextLong() {
+        // Zobrist.mix adds the gamma itself, so this is exactly SplitMix64
+        long z = state;
+        state += GOLDEN_GAMMA;
+        return Zobrist.mix(z);
+    }
+
+    /**
+     * Returns the internal state of this generator, to be restored later with
+     * {@link #setState(long)}.
+     *
+     * @return the state of this generator
+     */
+    public long getState() {
+        return state;
+    }
+
+    /**
+     * Puts this generator back into a state returned by {@link #getState()},
+     * so it returns the same numbers again.
+     *
+     * @param state the state to restore
+     */
+    public void setState(long state) {
+        this.state = state;
+    }
+
+    /**
+     * Returns a new generator, seeded from this one. The numbers of the new
+     * generator are unrelated to the numbers of this generator.
+     *
+     * @return a new generator
+     */
+    public @NotNull GameRandom split() {
+        return new GameRandom(Zobrist.mix(nextLong()));
+    }
+
+    /**
+     * Returns a new generator in the same state as this one, which returns
+     * the same numbers as this generator from now on.
+     *
+     * @return a copy of this generator
+     */
+    public @NotNull GameRandom copy() {
+        return new GameRandom(state);
+    }
+}
@@ -1,23 +1,53 @@
 package com.buaisociety.pacman.util;
 
 import com.buaisociety.pacman.entity.Direction;
-import com.buaisociety.pacman.entity.Entity;
-import com.buaisociety.pacman.entity.GhostEntity;
 import com.buaisociety.pacman.maze.Maze;
 import com.buaisociety.pacman.maze.Tile;
-import com.buaisociety.pacman.maze.TileState;
-import org.joml.Vector2i;
 
-import java.util.LinkedList;
-import java.util.Queue;
+import java.util.Arrays;
+import java.util.List;
 import java.util.function.Predicate;
 
+/**
+ * Breadth-first searches over the tiles of 1 maze.
+ *
+ * <p>Every buffer used by the search is allocated once per searcher, and the
+ * tiles are addressed by their flattened index (<code>y * width + x</code>)
+ * using the maze's precomputed neighbors, so a search allocates nothing once
+ * the maze has created its tiles. A searcher is not thread safe; use 1
+ * searcher per thread (usually 1 per behavior).
+ */
 public class Searcher {
 
+    private static final Direction[] DIRECTIONS = Direction.values();
+
     private final Maze maze;
+    private final int width;
+    private final int height;
+
+    // Scratch buffers, reused by every search
+    private final int[] queueTile;
+    private final byte[] queueDirection;  // ordinal of the first step, or -1 for the start tile
+    private final int[] queueDistance;
+    private final int[] queueTargets;  // bitmask of the target classes the tile belongs to
+    private final int[] visited;  // a tile is visited when visited[index] == epoch
+    private final int[] closestDistances = new int[32];  // per target class
+    @SuppressWarnings("unchecked")
+    private final Predicate<Tile>[] targetPredicates = new Predicate[32];
+    private final byte[] relativeIndex = new byte[4];  // absolute direction ordinal -> [forward, left, right, behind] index
+    private int epoch;
 
     public Searcher(Maze maze) {
         this.maze = maze;
+        this.height = maze.getHeight();
+        this.width = maze.getWidth();
+
+        int size = width * height;
+        this.queueTile = new int[size];
+        this.queueDirection = new byte[size];
+        this.queueDistance = new int[size];
+        this.queueTargets = new int[size];
+        this.visited = new int[size];
     }
 
     /**
@@ -30,92 +60,228 @@ public class Searcher {
      * @return A boolean array indicating directions to the closest target [forward, left, right, behind]
      */
     public boolean[] getDirectionsToClosestTarget(int startX, int startY, Direction startDirection, Predicate<Tile> targetPredicate) {
-        Tile[][] tiles = maze.getTiles(); // Access the tiles array
-        int height = tiles.length;
-        int width = tiles[0].length;
+        return getDirectionsToClosestTarget(startX, startY, startDirection, targetPredicate, new boolean[4]);
+    }
+
+    /**
+     * Performs BFS to find the directions to the closest target based on a given predicate,
+     * writing the result into the given array instead of allocating a new one.
+     *
+     * @param startX          The starting x-coordinate (tile position)
+     * @param startY          The starting y-coordinate (tile position)
+     * @param startDirection  The initial facing direction
+     * @param targetPredicate The predicate to determine if a tile is a target
+     * @param out             The array to fill, with a length of at least 4
+     * @return <code>out</code>, indicating directions to the closest target [forward, left, right, behind]
+     */
+    public boolean[] getDirectionsToClosestTarget(int startX, int startY, Direction startDirection, Predicate<Tile> targetPredicate, boolean[] out) {
+        Arrays.fill(out, 0, 4, false);
+        if (startX < 0 || startX >= width || startY < 0 || startY >= height)
+            return out;
+
+        // Start tile is never treated as a target "in a direction"
+        int start = startY * width + startX;
+        if (targetPredicate.test(maze.getTile(start)))
+            return out;
 
-        boolean[][] visited = new boolean[height][width];
-        Queue<BFSNode> queue = new LinkedList<>();
+        relativeIndex[startDirection.ordinal()] = 0;
+        relativeIndex[startDirection.left().ordinal()] = 1;
+        relativeIndex[startDirection.right().ordinal()] = 2;
+        relativeIndex[startDirection.behind().ordinal()] = 3;
 
-        // Initialize directions
-        boolean[] directionsToTarget = new boolean[4]; // [forward, left, right, behind]
+        int epoch = nextEpoch();
+        int head = 0;
+        int tail = 0;
 
-        // Enqueue starting position with null initial direction
-        queue.add(new BFSNode(startX, startY, null, 0));
+        // Tiles are marked as visited when they are enqueued, so each tile is
+        // in the queue at most once. Since the queue is FIFO, the first path
+        // to reach a tile is the same one that would be dequeued first anyway.
+        visited[start] = epoch;
+        queueTile[tail] = start;
+        queueDirection[tail] = -1;
+        queueDistance[tail] = 0;
+        queueTargets[tail] = 0;
+        tail++;
 
         int closestDistance = Integer.MAX_VALUE;
 
-        while (!queue.isEmpty()) {
-            BFSNode node = queue.poll();
-            int x = node.x;
-            int y = node.y;
-            Direction initialDirection = node.initialDirection;
-            int distance = node.distance;
+        while (head < tail) {
+            int index = queueTile[head];
+            int firstDirection = queueDirection[head];
+            int distance = queueDistance[head];
+            boolean isTarget = queueTargets[head] != 0;
+            head++;
 
-            // Skip if out of bounds or already visited
-            if (x < 0 || x >= width || y < 0 || y >= height || visited[y][x]) {
+            // Everything left in the queue is farther than the closest target
+            if (distance > closestDistance)
+                break;
+
+            // Check if we found a target. Continue to find all targets at the same minimal distance
+            if (isTarget) {
+                closestDistance = distance;
+                out[relativeIndex[firstDirection]] = true;
                 continue;
             }
 
-            visited[y][x] = true;
-            Tile tile = maze.getTile(x, y);
+            // Enqueue neighboring tiles
+            for (Direction dir : DIRECTIONS) {
+                int neighbor = maze.getNeighbor(index, dir);
+                if (visited[neighbor] == epoch)
+                    continue;
 
-            // Check if we found a target
-            if (targetPredicate.test(tile)) {
-                if (distance < closestDistance) {
-                    closestDistance = distance;
-                    directionsToTarget = new boolean[4]; // Reset directions
-                }
-                if (distance == closestDistance && initialDirection != null) {
-                    if (initialDirection == startDirection) {
-                        directionsToTarget[0] = true; // Forward
-                    } else if (initialDirection == startDirection.left()) {
-                        directionsToTarget[1] = true; // Left
-                    } else if (initialDirection == startDirection.right()) {
-                        directionsToTarget[2] = true; // Right
-                    } else if (initialDirection == startDirection.behind()) {
-                        directionsToTarget[3] = true; // Behind
-                    }
+                boolean neighborIsTarget = targetPredicate.test(maze.getTile(neighbor));
+                if (!neighborIsTarget && !maze.isPassable(neighbor))
+                    continue;
+
+                visited[neighbor] = epoch;
+                queueTile[tail] = neighbor;
+                queueDirection[tail] = firstDirection == -1 ? (byte) dir.ordinal() : (byte) firstDirection;
+                queueDistance[tail] = distance + 1;
+                queueTargets[tail] = neighborIsTarget ? 1 : 0;
+                tail++;
+            }
+        }
+
+        return out;
+    }
+
+    /**
+     * Finds the directions to the closest target of several target classes
+     * with a single BFS. For each class, the result is exactly what
+     * {@link #getDirectionsToClosestTarget(int, int, Direction, Predicate, boolean[])}
+     * would return for that class alone. The search stops as soon as the
+     * closest targets of every class have been found.
+     *
+     * <p>Passable tiles are always expanded, even when they are a target of
+     * some class. This can only open paths that go through a target of that
+     * class, and those paths are always longer than the path to that target,
+     * so they never change the result of that class.
+     *
+     * @param startX         The starting x-coordinate (tile position)
+     * @param startY         The starting y-coordinate (tile position)
+     * @param startDirection The initial facing direction
+     * @param targets        The predicates of each target class, at most 32
+     * @param out            The arrays to fill, 1 per target class, each with a length of at least 4
+     * @return <code>out</code>, where <code>out[i]</code> indicates directions to the closest target of class i [forward, left, right, behind]
+     */
+    public boolean[][] getDirectionsToClosestTargets(int startX, int startY, Direction startDirection, List<? extends Predicate<Tile>> targets, boolean[][] out) {
+        int classes = targets.size();
+        if (classes > 32)
+            throw new IllegalArgumentException("At most 32 target classes are supported, got " + classes);
+
+        for (int i = 0; i < classes; i++) {
+            Arrays.fill(out[i], 0, 4, false);
+            closestDistances[i] = Integer.MAX_VALUE;
+        }
+        if (startX < 0 || startX >= width || startY < 0 || startY >= height)
+            return out;
+
+        // Classes whose closest targets are all found. A class whose target is
+        // the start tile never has a direction, so it is resolved immediately.
+        int allClasses = classes == 32 ? -1 : (1 << classes) - 1;
+        for (int i = 0; i < classes; i++) {
+            targetPredicates[i] = targets.get(i);
+        }
+        int start = startY * width + startX;
+        int resolved = targetMask(maze.getTile(start), classes, 0);
+        if (resolved == allClasses)
+            return out;
+
+        relativeIndex[startDirection.ordinal()] = 0;
+        relativeIndex[startDirection.left().ordinal()] = 1;
+        relativeIndex[startDirection.right().ordinal()] = 2;
+        relativeIndex[startDirection.behind().ordinal()] = 3;
+
+        int epoch = nextEpoch();
+        int head = 0;
+        int tail = 0;
+
+        visited[start] = epoch;
+        queueTile[tail] = start;
+        queueDirection[tail] = -1;
+        queueDistance[tail] = 0;
+        queueTargets[tail] = 0;
+        tail++;
+
+        int currentDistance = 0;
+        while (head < tail) {
+            int index = queueTile[head];
+            int firstDirection = queueDirection[head];
+            int distance = queueDistance[head];
+            int targetMask = queueTargets[head];
+            head++;
+
+            // When we reach a new distance, every class that found a target
+            // at a shorter distance is done
+            if (distance > currentDistance) {
+                currentDistance = distance;
+                for (int i = 0; i < classes; i++) {
+                    if (closestDistances[i] < distance)
+                        resolved |= 1 << i;
                 }
-                continue; // Continue to find all targets at the same minimal distance
+                if (resolved == allClasses)
+                    break;
             }
 
+            // Record the targets found on this tile
+            int found = targetMask & ~resolved;
+            while (found != 0) {
+                int i = Integer.numberOfTrailingZeros(found);
+                found &= found - 1;
+                closestDistances[i] = distance;
+                out[i][relativeIndex[firstDirection]] = true;
+            }
+
+            // Walls (and other impassable tiles) are only ever targets, never expanded
+            if (!maze.isPassable(index) && index != start)
+                continue;
+
             // Enqueue neighboring tiles
-            for (Direction dir : Direction.values()) {
-                int newX = (x + dir.getDx() + width) % width;
-                int newY = (y + dir.getDy() + height) % height;
-
-                if (!visited[newY][newX]) {
-                    Tile neighborTile = maze.getTile(newX, newY);
-                    TileState neighborState = neighborTile.getState();
-
-                    if (neighborState.isPassable() || targetPredicate.test(neighborTile)) {
-                        // Determine initial direction
-                        Direction newInitialDirection = initialDirection;
-                        if (initialDirection == null) {
-                            newInitialDirection = dir;
-                        }
-                        queue.add(new BFSNode(newX, newY, newInitialDirection, distance + 1));
-                    }
-                }
+            for (Direction dir : DIRECTIONS) {
+                int neighbor = maze.getNeighbor(index, dir);
+                if (visited[neighbor] == epoch)
+                    continue;
+
+                int neighborMask = targetMask(maze.getTile(neighbor), classes, resolved);
+                if (neighborMask == 0 && !maze.isPassable(neighbor))
+                    continue;
+
+                visited[neighbor] = epoch;
+                queueTile[tail] = neighbor;
+                queueDirection[tail] = firstDirection == -1 ? (byte) dir.ordinal() : (byte) firstDirection;
+                queueDistance[tail] = distance + 1;
+                queueTargets[tail] = neighborMask;
+                tail++;
             }
         }
 
-        return directionsToTarget;
+        return out;
+    }
+
+    /**
+     * Returns the bitmask of the target classes the tile belongs to. Resolved
+     * classes are skipped, since their targets no longer matter.
+     */
+    private int targetMask(Tile tile, int classes, int resolved) {
+        int mask = 0;
+        for (int i = 0; i < classes; i++) {
+            if ((resolved & (1 << i)) == 0 && targetPredicates[i].test(tile))
+                mask |= 1 << i;
+        }
+        return mask;
     }
 
-    // Helper class for BFS nodes
-    private static class BFSNode {
-        int x;
-        int y;
-        Direction initialDirection;
-        int distance;
-
-        BFSNode(int x, int y, Direction initialDirection, int distance) {
-            this.x = x;
-            this.y = y;
-            this.initialDirection = initialDirection;
-            this.distance = distance;
+    /**
+     * Returns a new epoch for the visited array, clearing it on the (very
+     * rare) overflow.
+     *
+     * @return the epoch for the next search
+     */
+    private int nextEpoch() {
+        if (++epoch == Integer.MAX_VALUE) {
+            Arrays.fill(visited, 0);
+            epoch = 1;
         }
+        return epoch;
     }
 }
@@ -0,0 +1,76 @@
+package com.buaisociety.pacman.util;
+
+/**
+ * Keys for the Zobrist hash of a game state, see
+ * {@link com.buaisociety.pacman.maze.Maze#getStateHash()}.
+ *
+ * <p>A Zobrist hash XORs together 1 random key per feature of the state (a
+ * pellet on tile 42, a ghost facing left on tile 97, ...), so changing 1
+ * feature only costs 2 XORs: remove the old key and add the new one. Instead
+ * of filling tables of random keys for every maze size, keys are derived by
+ * mixing the feature with the SplitMix64 finalizer. The keys are just as well
+ * distributed, and they are the same in every game and every run.
+ */
+public final class Zobrist {
+
+    private static final long PELLET = 1;
+    private static final long ENTITY = 2;
+    private static final long PHASE = 3;
+
+    private Zobrist() {
+    }
+
+    /**
+     * Returns the key of a pellet (or power pellet) on the given tile.
+     *
+     * @param powerPellet true for a power pellet
+     * @param tile        the index of the tile
+     * @return the key of the pellet
+     */
+    public static long pelletKey(boolean powerPellet, int tile) {
+        return mix(mix(mix(PELLET) ^ (powerPellet ? 1 : 0)) ^ tile);
+    }
+
+    /**
+     * Returns the key of an entity on the given tile.
+     *
+     * @param type      the ordinal of the entity's type
+     * @param identity  tells apart entities of the same type, e.g. each ghost's scatter tile
+     * @param tile      the index of the tile the entity is on
+     * @param direction the ordinal of the direction the entity is facing
+     * @param state     any extra state of the entity, e.g. the ghost state ordinal
+     * @return the key of the entity
+     */
+    public static long entityKey(int type, long identity, int tile, int direction, int state) {
+        long key = mix(mix(ENTITY) ^ type);
+        key = mix(key ^ identity);
+        return mix(key ^ ((long) tile << 16 | (long) direction << 8 | state));
+    }
+
+    /**
+     * Returns the key of the maze-wide timers: the frightened timer and the
+     * chase/scatter phase.
+     *
+     * @param frightenedTimer the number of frightened ticks left
+     * @param chaseIndex      the index of the current chase/scatter phase
+     * @param chase           true if the ghosts are in chase mode
+     * @return the key of the timers
+     */
+    public static long phaseKey(int frightenedTimer, int chaseIndex, boolean chase) {
+        return mix(mix(PHASE) ^ ((long) frightenedTimer << 32 | (long) chaseIndex << 1 | (chase ? 1 : 0)));
+    }
+
+    /**
+     * The SplitMix64 finalizer, a bijection on 64-bit values that flips about
+     * half of the output bits for every input bit.
+     *
+     * @param z the value to mix
+     * @return the mixed value
+     */
+    public static long mix(long z) {
+        z += 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
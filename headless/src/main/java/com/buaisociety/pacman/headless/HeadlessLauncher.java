@@ -0,0 +1,24 @@
+package com.buaisociety.pacman.headless;
+
+import com.badlogic.gdx.Application;
+import com.badlogic.gdx.backends.headless.HeadlessApplication;
+import com.badlogic.gdx.backends.headless.HeadlessApplicationConfiguration;
+import com.buaisociety.pacman.HeadlessMain;
+
+/** Launches the headless application, used to train without a window or GPU. */
+public class HeadlessLauncher {
+    public static void main(String[] args) {
+        createApplication();
+    }
+
+    private static Application createApplication() {
+        return new HeadlessApplication(new HeadlessMain(), getDefaultConfiguration());
+    }
+
+    private static HeadlessApplicationConfiguration getDefaultConfiguration() {
+        HeadlessApplicationConfiguration configuration = new HeadlessApplicationConfiguration();
+        // 0 updates per second means HeadlessMain#render() is called as often as possible
+        configuration.updatesPerSecond = 0;
+        return configuration;
+    }
+}
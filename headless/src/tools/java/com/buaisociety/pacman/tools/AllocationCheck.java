@@ -0,0 +1,125 @@
+package com.buaisociety.pacman.tools;
+
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.headless.HeadlessApplication;
+import com.badlogic.gdx.backends.headless.HeadlessApplicationConfiguration;
+import com.buaisociety.pacman.GameManager;
+import com.buaisociety.pacman.entity.EntityType;
+import com.buaisociety.pacman.entity.PacmanEntity;
+import com.buaisociety.pacman.entity.behavior.RandomDirectionBehavior;
+import com.buaisociety.pacman.event.EntityPreSpawnEvent;
+import com.buaisociety.pacman.maze.Maze;
+import com.buaisociety.pacman.util.EventSystem;
+import com.sun.management.ThreadMXBean;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Checks that a game tick allocates nothing once the game is running. Games
+ * of <code>levels.json</code> are played by a random pacman, and after a
+ * warmup, every tick is measured with
+ * {@link ThreadMXBean#getCurrentThreadAllocatedBytes()}. Ticks that end a
+ * life or a level are not measured, since moving on to the next life or level
+ * is allowed to allocate, and neither are ticks that spawn or remove an
+ * entity (the fruit).
+ *
+ * <p>Exits with status 1 if any measured tick allocated. Run it with
+ * <code>./gradlew headless:allocationCheck</code>
+ */
+public class AllocationCheck extends ApplicationAdapter {
+
+    public static void main(String[] args) {
+        // Exceptions only end the application's thread, so they must end the JVM with a failure
+        Thread.setDefaultUncaughtExceptionHandler((thread, e) -> {
+            e.printStackTrace();
+            System.exit(1);
+        });
+        new HeadlessApplication(new AllocationCheck(), new HeadlessApplicationConfiguration());
+    }
+
+    private final int warmupTicks = 50_000;  // lets the JIT compile (and escape analyze) the hot paths
+    private final int measuredTicks = 50_000;
+
+    private EventSystem events;
+    private GameManager game;
+    private long games;
+
+    @Override
+    public void create() {
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!threads.isThreadAllocatedMemorySupported())
+            throw new UnsupportedOperationException("This JVM cannot measure allocated bytes per thread");
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        events = new EventSystem();
+        events.registerListener(EntityPreSpawnEvent.class, event -> {
+            if (event.getEntityType() == EntityType.PACMAN)
+                ((PacmanEntity.Config) event.getConfig()).behavior = new RandomDirectionBehavior();
+        });
+        startGame();
+
+        for (int i = 0; i < warmupTicks; i++) {
+            game.update();
+            postUpdate();
+        }
+
+        // The measurement itself may allocate, so it is subtracted from every tick
+        long overhead = Long.MAX_VALUE;
+        for (int i = 0; i < 1000; i++) {
+            long before = threads.getCurrentThreadAllocatedBytes();
+            overhead = Math.min(overhead, threads.getCurrentThreadAllocatedBytes() - before);
+        }
+
+        long allocatedBytes = 0;
+        long worstTick = 0;
+        int ticks = 0;
+        while (ticks < measuredTicks) {
+            int entities = game.getCurrentMaze().getEntities().size();
+            long before = threads.getCurrentThreadAllocatedBytes();
+            game.update();
+            long allocated = threads.getCurrentThreadAllocatedBytes() - before - overhead;
+
+            Maze maze = game.getCurrentMaze();
+            if (maze.getTerminalReason() == null && game.getExtraLives() >= 0 && maze.getEntities().size() == entities) {
+                allocatedBytes += allocated;
+                worstTick = Math.max(worstTick, allocated);
+                ticks++;
+            }
+            postUpdate();
+        }
+
+        System.out.println("Ticks: " + ticks + " over " + games + " games, allocated: " + allocatedBytes + " bytes");
+        System.out.printf("%.2f bytes/tick, worst tick: %d bytes%n", (double) allocatedBytes / ticks, worstTick);
+
+        if (allocatedBytes != 0)
+            throw new IllegalStateException("Steady state ticks allocated " + allocatedBytes + " bytes");
+        Gdx.app.exit();
+    }
+
+    /**
+     * Ends the current life or level, if the last tick did, and starts a new
+     * game once every life is lost.
+     */
+    private void postUpdate() {
+        game.postUpdate();
+        if (game.getExtraLives() < 0) {
+            game.dispose();
+            startGame();
+        }
+    }
+
+    private void startGame() {
+        GameManager.Config config = new GameManager.Config();
+        config.headless = true;
+        config.seed = ++games;
+        game = new GameManager(events, config);
+        game.nextLevel();
+    }
+
+    @Override
+    public void dispose() {
+        if (game != null)
+            game.dispose();
+    }
+}
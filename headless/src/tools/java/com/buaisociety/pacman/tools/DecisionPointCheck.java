@@ -0,0 +1,214 @@
+package com.buaisociety.pacman.tools;
+
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.headless.HeadlessApplication;
+import com.badlogic.gdx.backends.headless.HeadlessApplicationConfiguration;
+import com.buaisociety.pacman.GameManager;
+import com.buaisociety.pacman.entity.Direction;
+import com.buaisociety.pacman.entity.Entity;
+import com.buaisociety.pacman.entity.EntityType;
+import com.buaisociety.pacman.entity.GhostEntity;
+import com.buaisociety.pacman.entity.PacmanEntity;
+import com.buaisociety.pacman.entity.behavior.Behavior;
+import com.buaisociety.pacman.event.EntityPreSpawnEvent;
+import com.buaisociety.pacman.maze.DistanceTable;
+import com.buaisociety.pacman.maze.Maze;
+import com.buaisociety.pacman.util.EventSystem;
+import com.buaisociety.pacman.util.GameRandom;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Checks that {@link PacmanEntity.Config#decisionPointsOnly} only skips
+ * questions whose answer would not have changed. Each seed of
+ * <code>levels.json</code> is played twice in lockstep, once asking the
+ * behavior every tick and once only at decision points. On every tick,
+ * pacman must be in the same position facing the same direction, and the
+ * ghosts, pellets, score and lives must be the same.
+ *
+ * <p>Pacman walks to tiles where he has a choice (intersections, corners and
+ * dead ends) in a random order, along shortest paths. Between 2 such tiles
+ * the answer stays the same, which is exactly what the mode assumes.
+ *
+ * <p>Exits with status 1 if the games differ. Run it with
+ * <code>./gradlew headless:decisionPointCheck</code>
+ */
+public class DecisionPointCheck extends ApplicationAdapter {
+
+    private final int seeds = 20;
+    private final int maxTicks = 20_000;  // per game
+
+    private long askedEveryTick;
+    private long askedAtDecisionPoints;
+
+    public static void main(String[] args) {
+        // Exceptions only end the application's thread, so they must end the JVM with a failure
+        Thread.setDefaultUncaughtExceptionHandler((thread, e) -> {
+            e.printStackTrace();
+            System.exit(1);
+        });
+        new HeadlessApplication(new DecisionPointCheck(), new HeadlessApplicationConfiguration());
+    }
+
+    @Override
+    public void create() {
+        long ticks = 0;
+        for (long seed = 1; seed <= seeds; seed++) {
+            GameManager everyTick = startGame(seed, false);
+            GameManager decisionPoints = startGame(seed, true);
+
+            for (int tick = 0; tick < maxTicks && everyTick.getExtraLives() >= 0; tick++) {
+                everyTick.update();
+                decisionPoints.update();
+                compare(seed, tick, everyTick, decisionPoints);
+                everyTick.postUpdate();
+                decisionPoints.postUpdate();
+                ticks++;
+            }
+            everyTick.dispose();
+            decisionPoints.dispose();
+        }
+
+        System.out.println("Ticks: " + ticks + " over " + seeds + " games, all identical");
+        System.out.printf("Behavior asked %d times every tick, %d times at decision points (%.1f%%)%n",
+            askedEveryTick, askedAtDecisionPoints, 100.0 * askedAtDecisionPoints / askedEveryTick);
+        Gdx.app.exit();
+    }
+
+    private void compare(long seed, int tick, @NotNull GameManager expected, @NotNull GameManager actual) {
+        Maze expectedMaze = expected.getCurrentMaze();
+        Maze actualMaze = actual.getCurrentMaze();
+        PacmanEntity expectedPacman = expectedMaze.getPacman();
+        PacmanEntity actualPacman = actualMaze.getPacman();
+        if (!samePosition(expectedPacman, actualPacman)
+            || expectedPacman.getDirection() != actualPacman.getDirection()
+            || expectedMaze.getPelletsRemaining() != actualMaze.getPelletsRemaining()
+            || !sameGhosts(expectedMaze, actualMaze)
+            || expected.getScore() != actual.getScore()
+            || expected.getExtraLives() != actual.getExtraLives()) {
+            throw new IllegalStateException(String.format("Seed %d, tick %d: pacman at (%.2f, %.2f) facing %s when asked every tick, but at (%.2f, %.2f) facing %s when asked at decision points",
+                seed, tick, expectedPacman.posX(), expectedPacman.posY(), expectedPacman.getDirection(),
+                actualPacman.posX(), actualPacman.posY(), actualPacman.getDirection()));
+        }
+    }
+
+    private static boolean samePosition(@NotNull Entity expected, @NotNull Entity actual) {
+        return expected.posX() == actual.posX() && expected.posY() == actual.posY();
+    }
+
+    private static boolean sameGhosts(@NotNull Maze expected, @NotNull Maze actual) {
+        List<GhostEntity> expectedGhosts = expected.getGhosts();
+        List<GhostEntity> actualGhosts = actual.getGhosts();
+        if (expectedGhosts.size() != actualGhosts.size())
+            return false;
+        for (int i = 0; i < expectedGhosts.size(); i++) {
+            GhostEntity expectedGhost = expectedGhosts.get(i);
+            GhostEntity actualGhost = actualGhosts.get(i);
+            if (!samePosition(expectedGhost, actualGhost) || expectedGhost.getState() != actualGhost.getState())
+                return false;
+        }
+        return true;
+    }
+
+    private @NotNull GameManager startGame(long seed, boolean decisionPointsOnly) {
+        EventSystem events = new EventSystem();
+        events.registerListener(EntityPreSpawnEvent.class, event -> {
+            if (event.getEntityType() != EntityType.PACMAN)
+                return;
+
+            PacmanEntity.Config config = (PacmanEntity.Config) event.getConfig();
+            config.behavior = new TourBehavior(seed, decisionPointsOnly);
+            config.decisionPointsOnly = decisionPointsOnly;
+        });
+
+        GameManager.Config config = new GameManager.Config();
+        config.headless = true;
+        config.seed = seed;
+        GameManager game = new GameManager(events, config);
+        game.nextLevel();
+        return game;
+    }
+
+    /**
+     * Walks to every tile with a choice in a random order, along shortest
+     * paths. The answer only depends on pacman's tile and on which target is
+     * next, and the target only changes on a tile with a choice, so the
+     * answer never changes in a corridor.
+     */
+    private final class TourBehavior implements Behavior {
+        private final long seed;
+        private final boolean decisionPointsOnly;
+        private @Nullable Maze maze;
+        private int[] targets;
+        private int next;
+
+        TourBehavior(long seed, boolean decisionPointsOnly) {
+            this.seed = seed;
+            this.decisionPointsOnly = decisionPointsOnly;
+        }
+
+        @NotNull
+        @Override
+        public Direction getDirection(@NotNull Entity entity) {
+            if (decisionPointsOnly)
+                askedAtDecisionPoints++;
+            else
+                askedEveryTick++;
+
+            Maze maze = entity.getMaze();
+            if (this.maze != maze) {
+                this.maze = maze;
+                targets = findTargets(maze, new GameRandom(seed));
+                next = 0;
+            }
+
+            // Targets that were reached, or that cannot be reached, are skipped
+            DistanceTable distances = maze.getDistanceTable();
+            int tile = entity.tileIndex();
+            for (int i = 0; i < targets.length; i++) {
+                Direction step = distances.firstStep(tile, targets[next]);
+                if (step != null)
+                    return step;
+                next = (next + 1) % targets.length;
+            }
+            return entity.getDirection();
+        }
+    }
+
+    /**
+     * Returns every passable tile that is not a corridor, in a random order.
+     */
+    private static int @NotNull [] findTargets(@NotNull Maze maze, @NotNull GameRandom random) {
+        int tiles = maze.getWidth() * maze.getHeight();
+        int[] targets = new int[tiles];
+        int count = 0;
+        for (int tile = 0; tile < tiles; tile++) {
+            if (maze.isPassable(tile) && !isCorridor(maze, tile))
+                targets[count++] = tile;
+        }
+
+        for (int i = count - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = targets[i];
+            targets[i] = targets[j];
+            targets[j] = swap;
+        }
+        return Arrays.copyOf(targets, count);
+    }
+
+    /**
+     * Returns true if the tile only connects 2 opposite neighbors, like
+     * {@link PacmanEntity} decides.
+     */
+    private static boolean isCorridor(@NotNull Maze maze, int tile) {
+        boolean up = maze.isPassable(maze.getNeighbor(tile, Direction.UP));
+        boolean down = maze.isPassable(maze.getNeighbor(tile, Direction.DOWN));
+        boolean left = maze.isPassable(maze.getNeighbor(tile, Direction.LEFT));
+        boolean right = maze.isPassable(maze.getNeighbor(tile, Direction.RIGHT));
+        return up && down && !left && !right || left && right && !up && !down;
+    }
+}
@@ -0,0 +1,259 @@
+package com.buaisociety.pacman.tools;
+
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.headless.HeadlessApplication;
+import com.badlogic.gdx.backends.headless.HeadlessApplicationConfiguration;
+import com.buaisociety.pacman.GameManager;
+import com.buaisociety.pacman.entity.Direction;
+import com.buaisociety.pacman.maze.Maze;
+import com.buaisociety.pacman.maze.Tile;
+import com.buaisociety.pacman.maze.TileState;
+import com.buaisociety.pacman.util.EventSystem;
+import com.buaisociety.pacman.util.GameRandom;
+import com.buaisociety.pacman.util.Searcher;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.function.Predicate;
+
+/**
+ * Compares {@link Searcher} against the original implementation of
+ * {@link Searcher#getDirectionsToClosestTarget(int, int, Direction, Predicate)},
+ * which allocated a visited grid, a linked list and 1 node per enqueued tile
+ * on every call.
+ *
+ * <p>Every query is run on both implementations, on the levels of
+ * <code>levels.json</code> with a random fraction of their pellets eaten, and
+ * the results must be identical. Then both are timed on the same queries.
+ * Exits with status 1 if any result differs. Run it with
+ * <code>./gradlew headless:searcherBenchmark</code>
+ */
+public class SearcherBenchmark extends ApplicationAdapter {
+
+    public static void main(String[] args) {
+        // Exceptions only end the application's thread, so they must end the JVM with a failure
+        Thread.setDefaultUncaughtExceptionHandler((thread, e) -> {
+            e.printStackTrace();
+            System.exit(1);
+        });
+        new HeadlessApplication(new SearcherBenchmark(), new HeadlessApplicationConfiguration());
+    }
+
+    private static final Predicate<Tile> IS_PELLET = tile -> tile.getState() == TileState.PELLET || tile.getState() == TileState.POWER_PELLET;
+    private static final Predicate<Tile> IS_POWER_PELLET = tile -> tile.getState() == TileState.POWER_PELLET;
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private final int levels = 4;
+    private final int boardsPerLevel = 50;  // each with a different fraction of pellets eaten
+    private final int queriesPerBoard = 200;
+    private final int rounds = 5;  // the first round only warms up the JIT
+
+    @Override
+    public void create() {
+        GameManager.Config config = new GameManager.Config();
+        config.headless = true;
+        config.seed = 1;
+        GameManager game = new GameManager(new EventSystem(), config);
+        GameRandom random = new GameRandom(config.seed);
+
+        long legacyNanos = 0;
+        long searcherNanos = 0;
+        long fusedNanos = 0;
+        long queries = 0;
+        long mismatches = 0;
+        boolean[] out = new boolean[4];
+        boolean[][] fusedOut = new boolean[2][4];
+        List<Predicate<Tile>> targets = List.of(IS_PELLET, IS_POWER_PELLET);
+
+        for (int level = 0; level < levels; level++) {
+            game.nextLevel();
+            Maze maze = game.getCurrentMaze();
+            Searcher searcher = new Searcher(maze);
+            int tiles = maze.getWidth() * maze.getHeight();
+            long[] mask = new long[maze.getPelletWordCount()];
+            int[] startTiles = new int[queriesPerBoard];
+            Direction[] startDirections = new Direction[queriesPerBoard];
+
+            for (int board = 0; board < boardsPerLevel; board++) {
+                // Eat a random fraction of the pellets, like a game in progress
+                maze.resetTiles();
+                double kept = random.nextDouble();
+                for (int i = 0; i < tiles; i++) {
+                    if (random.nextDouble() < kept)
+                        mask[i >>> 6] |= 1L << i;
+                    else
+                        mask[i >>> 6] &= ~(1L << i);
+                }
+                maze.retainPellets(mask);
+
+                for (int i = 0; i < queriesPerBoard; i++) {
+                    int start;
+                    do {
+                        start = random.nextInt(tiles);
+                    } while (!maze.isPassable(start));
+                    startTiles[i] = start;
+                    startDirections[i] = DIRECTIONS[random.nextInt(DIRECTIONS.length)];
+                }
+
+                // Correctness: both implementations, for both target classes
+                for (int i = 0; i < queriesPerBoard; i++) {
+                    int x = startTiles[i] % maze.getWidth();
+                    int y = startTiles[i] / maze.getWidth();
+                    boolean[] pellet = legacyDirectionsToClosestTarget(maze, x, y, startDirections[i], IS_PELLET);
+                    boolean[] powerPellet = legacyDirectionsToClosestTarget(maze, x, y, startDirections[i], IS_POWER_PELLET);
+                    searcher.getDirectionsToClosestTargets(x, y, startDirections[i], targets, fusedOut);
+                    if (!equals(pellet, searcher.getDirectionsToClosestTarget(x, y, startDirections[i], IS_PELLET, out))
+                        || !equals(powerPellet, searcher.getDirectionsToClosestTarget(x, y, startDirections[i], IS_POWER_PELLET, out))
+                        || !equals(pellet, fusedOut[0]) || !equals(powerPellet, fusedOut[1]))
+                        mismatches++;
+                }
+
+                // Speed: each implementation runs the same queries back to back
+                for (int round = 0; round < rounds; round++) {
+                    long start = System.nanoTime();
+                    for (int i = 0; i < queriesPerBoard; i++) {
+                        int x = startTiles[i] % maze.getWidth();
+                        int y = startTiles[i] / maze.getWidth();
+                        legacyDirectionsToClosestTarget(maze, x, y, startDirections[i], IS_PELLET);
+                        legacyDirectionsToClosestTarget(maze, x, y, startDirections[i], IS_POWER_PELLET);
+                    }
+                    long legacyEnd = System.nanoTime();
+                    for (int i = 0; i < queriesPerBoard; i++) {
+                        int x = startTiles[i] % maze.getWidth();
+                        int y = startTiles[i] / maze.getWidth();
+                        searcher.getDirectionsToClosestTarget(x, y, startDirections[i], IS_PELLET, out);
+                        searcher.getDirectionsToClosestTarget(x, y, startDirections[i], IS_POWER_PELLET, out);
+                    }
+                    long searcherEnd = System.nanoTime();
+                    for (int i = 0; i < queriesPerBoard; i++) {
+                        int x = startTiles[i] % maze.getWidth();
+                        int y = startTiles[i] / maze.getWidth();
+                        searcher.getDirectionsToClosestTargets(x, y, startDirections[i], targets, fusedOut);
+                    }
+                    long fusedEnd = System.nanoTime();
+
+                    if (round > 0) {
+                        legacyNanos += legacyEnd - start;
+                        searcherNanos += searcherEnd - legacyEnd;
+                        fusedNanos += fusedEnd - searcherEnd;
+                        queries += queriesPerBoard;
+                    }
+                }
+            }
+        }
+
+        System.out.println("Queries: " + queries + " (pellet + power pellet), mismatches: " + mismatches);
+        System.out.printf("Original: %.0f ns/query%n", (double) legacyNanos / queries);
+        System.out.printf("Searcher: %.0f ns/query (%.1fx)%n", (double) searcherNanos / queries, (double) legacyNanos / searcherNanos);
+        System.out.printf("Searcher, 1 search for both: %.0f ns/query (%.1fx)%n", (double) fusedNanos / queries, (double) legacyNanos / fusedNanos);
+        game.dispose();
+
+        if (mismatches != 0)
+            throw new IllegalStateException(mismatches + " queries did not match the original implementation");
+        Gdx.app.exit();
+    }
+
+    private static boolean equals(boolean @NotNull [] expected, boolean @NotNull [] actual) {
+        for (int i = 0; i < 4; i++) {
+            if (expected[i] != actual[i])
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * The original implementation of {@link Searcher#getDirectionsToClosestTarget(int, int, Direction, Predicate)},
+     * kept as the reference for the results and timings.
+     */
+    private static boolean[] legacyDirectionsToClosestTarget(Maze maze, int startX, int startY, Direction startDirection, Predicate<Tile> targetPredicate) {
+        int height = maze.getHeight();
+        int width = maze.getWidth();
+
+        boolean[][] visited = new boolean[height][width];
+        Queue<BFSNode> queue = new LinkedList<>();
+
+        // Initialize directions
+        boolean[] directionsToTarget = new boolean[4]; // [forward, left, right, behind]
+
+        // Enqueue starting position with null initial direction
+        queue.add(new BFSNode(startX, startY, null, 0));
+
+        int closestDistance = Integer.MAX_VALUE;
+
+        while (!queue.isEmpty()) {
+            BFSNode node = queue.poll();
+            int x = node.x;
+            int y = node.y;
+            Direction initialDirection = node.initialDirection;
+            int distance = node.distance;
+
+            // Skip if out of bounds or already visited
+            if (x < 0 || x >= width || y < 0 || y >= height || visited[y][x]) {
+                continue;
+            }
+
+            visited[y][x] = true;
+            Tile tile = maze.getTile(x, y);
+
+            // Check if we found a target
+            if (targetPredicate.test(tile)) {
+                if (distance < closestDistance) {
+                    closestDistance = distance;
+                    directionsToTarget = new boolean[4]; // Reset directions
+                }
+                if (distance == closestDistance && initialDirection != null) {
+                    if (initialDirection == startDirection) {
+                        directionsToTarget[0] = true; // Forward
+                    } else if (initialDirection == startDirection.left()) {
+                        directionsToTarget[1] = true; // Left
+                    } else if (initialDirection == startDirection.right()) {
+                        directionsToTarget[2] = true; // Right
+                    } else if (initialDirection == startDirection.behind()) {
+                        directionsToTarget[3] = true; // Behind
+                    }
+                }
+                continue; // Continue to find all targets at the same minimal distance
+            }
+
+            // Enqueue neighboring tiles
+            for (Direction dir : Direction.values()) {
+                int newX = (x + dir.getDx() + width) % width;
+                int newY = (y + dir.getDy() + height) % height;
+
+                if (!visited[newY][newX]) {
+                    Tile neighborTile = maze.getTile(newX, newY);
+                    TileState neighborState = neighborTile.getState();
+
+                    if (neighborState.isPassable() || targetPredicate.test(neighborTile)) {
+                        // Determine initial direction
+                        Direction newInitialDirection = initialDirection;
+                        if (initialDirection == null) {
+                            newInitialDirection = dir;
+                        }
+                        queue.add(new BFSNode(newX, newY, newInitialDirection, distance + 1));
+                    }
+                }
+            }
+        }
+
+        return directionsToTarget;
+    }
+
+    // Helper class for BFS nodes
+    private static class BFSNode {
+        int x;
+        int y;
+        Direction initialDirection;
+        int distance;
+
+        BFSNode(int x, int y, Direction initialDirection, int distance) {
+            this.x = x;
+            this.y = y;
+            this.initialDirection = initialDirection;
+            this.distance = distance;
+        }
+    }
+}
@@ -16,10 +16,10 @@ public class Lwjgl3Launcher {
         boolean isTraining = false; // set this as false to try out the tournament settings
         if (isTraining) {
             Lwjgl3ApplicationConfiguration config = getDefaultConfiguration();
-            // disable vsync to run the game as fast as possible
-            config.useVsync(false);
-            // hard limit on fps to see the game running at a reasonable speed
-            config.setForegroundFPS(400);
+            // the games are simulated on their own thread, so the frame rate
+            // only limits how often the games are drawn
+            config.useVsync(true);
+            config.setForegroundFPS(60);
             return new Lwjgl3Application(new Main(), config);
         } else {
             Lwjgl3ApplicationConfiguration config = getDefaultConfiguration();